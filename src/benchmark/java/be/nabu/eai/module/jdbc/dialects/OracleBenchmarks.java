@@ -0,0 +1,288 @@
+/*
+* Copyright (C) 2016 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.eai.module.jdbc.dialects;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.text.ParseException;
+import java.time.Instant;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import be.nabu.libs.property.ValueImpl;
+import be.nabu.libs.types.SimpleTypeWrapperFactory;
+import be.nabu.libs.types.api.ComplexContent;
+import be.nabu.libs.types.base.SimpleElementImpl;
+import be.nabu.libs.types.properties.CollectionNameProperty;
+import be.nabu.libs.types.properties.IndexedProperty;
+import be.nabu.libs.types.properties.MaxLengthProperty;
+import be.nabu.libs.types.properties.MinOccursProperty;
+import be.nabu.libs.types.structure.Structure;
+import oracle.sql.NUMBER;
+import oracle.sql.TIMESTAMP;
+
+/**
+ * Micro benchmarks for the hot paths of the dialect, none of them need a database.
+ * 
+ * Run them with: mvn -Pbenchmarks compile exec:exec
+ * The main method adds the gc profiler so every benchmark also reports the allocation rate per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OracleBenchmarks {
+
+	// statements in the style of what our services actually send: reserved words as column names, booleans, literals, comments and hints
+	private static final String [] CORPUS = new String [] {
+		"select id, name, size, comment, date from documents where owner_id = :ownerId and deleted = false order by created desc",
+		"select d.id, d.size, c.comment from documents d join comments c on c.document_id = d.id where c.resolved = true and d.state = 'open'",
+		"update tasks set state = :state, modified = :modified, comment = :comment where id = :id and locked = false",
+		"delete from sessions where uid = :uid and created < :created",
+		"select /*+ FIRST_ROWS(10) */ * from audit_log where resource = :resource -- most recent first\n order by created desc",
+		"insert into files (id, name, size, initial, number) values (:id, :name, :size, :initial, :number)",
+		"select count(*) from orders o where o.status in ('new', 'it''s pending') and o.archived = false and exists (select 1 from order_lines l where l.order_id = o.id)",
+		"select q'[it's a size]' as label, level from dual connect by level <= 10"
+	};
+
+	private Oracle dialect;
+	private Structure wideType;
+	private ComplexContent wideContent;
+	private TIMESTAMP timestamp;
+	private OracleTimestampToDate timestampToDate;
+	private OracleTimestampToInstant timestampToInstant;
+	private OracleTimestampToString timestampToString;
+	private NUMBER number, decimal;
+	private OracleNumberToLong numberToLong;
+	private OracleNumberToBigDecimal numberToBigDecimal;
+	private int index;
+
+	@Setup
+	public void setup() {
+		dialect = new Oracle();
+		wideType = buildWideType(100);
+		wideContent = wideType.newInstance();
+		for (int i = 0; i < 100; i++) {
+			switch (i % 5) {
+				case 0: wideContent.set("text" + i, "value with a ' quote " + i); break;
+				case 1: wideContent.set("number" + i, (long) i); break;
+				case 2: wideContent.set("moment" + i, new Date()); break;
+				case 3: wideContent.set("flag" + i, i % 2 == 0); break;
+				case 4: wideContent.set("amount" + i, new BigDecimal("1234.5678")); break;
+			}
+		}
+		timestamp = new TIMESTAMP(new Timestamp(System.currentTimeMillis()));
+		timestampToDate = new OracleTimestampToDate();
+		timestampToInstant = new OracleTimestampToInstant();
+		timestampToString = new OracleTimestampToString();
+		number = new NUMBER(1234567890123l);
+		decimal = new NUMBER(new BigDecimal("1234.5678"));
+		numberToLong = new OracleNumberToLong();
+		numberToBigDecimal = new OracleNumberToBigDecimal();
+	}
+
+	private String next() {
+		return CORPUS[index++ % CORPUS.length];
+	}
+
+	// goes through the rewrite cache, this is what a running server mostly sees
+	@Benchmark
+	public String rewriteCached() {
+		return dialect.rewrite(next(), null, null);
+	}
+
+	// the full rewrite (scanner, merge, hints, metrics) without the cache, this is what every new statement costs
+	@Benchmark
+	public String rewriteUncached() {
+		return dialect.rewriteUncached(next(), null, null, null, false);
+	}
+
+	@Benchmark
+	public String rewriteReserved() {
+		return new OracleStatementScanner(false, true).scan(next());
+	}
+
+	// only the merge depends on the amount of rows so it gets its own state
+	@State(Scope.Thread)
+	public static class MergeState {
+		@Param({ "1", "10", "1000" })
+		private int rows;
+		private String merge;
+
+		@Setup
+		public void setup() {
+			merge = buildMerge(rows);
+		}
+	}
+
+	@Benchmark
+	public String rewriteMerge(MergeState state) throws ParseException {
+		return Oracle.rewriteMerge(state.merge);
+	}
+
+	@Benchmark
+	public void limit(Blackhole blackhole) {
+		blackhole.consume(dialect.limit(next(), null, 50));
+		blackhole.consume(dialect.limit(next(), 1000l, 50));
+	}
+
+	// a deep page in every shape we have generated: the original double rownum wrapper, the stopkey rownum wrapper (pre 12c) and row limiting (12c+)
+	@Benchmark
+	public String limitOld() {
+		String sql = "select results.*, rownum as record_number from (" + next() + ") results where rownum <= " + (1000000l + 50);
+		return "select results.* from (" + sql + ") results where record_number >= " + 1000000l;
+	}
+
+	@Benchmark
+	public String limitRownum() {
+		return dialect.limit(next(), 1000000l, 50, false);
+	}
+
+	@Benchmark
+	public String limitRowLimiting() {
+		return dialect.limit(next(), 1000000l, 50, true);
+	}
+
+	@Benchmark
+	public String buildInsertSQL() {
+		return dialect.buildInsertSQL(wideContent, true);
+	}
+
+	@Benchmark
+	public String buildCreateSQL() {
+		return dialect.buildCreateSQL(wideType, false);
+	}
+
+	@Benchmark
+	public void timestampConverters(Blackhole blackhole) {
+		blackhole.consume(timestampToDate.convert(timestamp));
+		blackhole.consume(timestampToInstant.convert(timestamp));
+		blackhole.consume(timestampToString.convert(timestamp));
+	}
+
+	// the converters decode the bytes against the cached default zone, compare them with the driver path they replace
+	@Benchmark
+	public Date timestampToDate() {
+		return timestampToDate.convert(timestamp);
+	}
+
+	@Benchmark
+	public Date timestampToDateDriver() throws SQLException {
+		return new Date(timestamp.timestampValue().getTime());
+	}
+
+	@Benchmark
+	public Instant timestampToInstant() {
+		return timestampToInstant.convert(timestamp);
+	}
+
+	@Benchmark
+	public Instant timestampToInstantDriver() throws SQLException {
+		return timestamp.timestampValue().toInstant();
+	}
+
+	// the number converters decode the bytes, compare them with the driver conversions they replace
+	@Benchmark
+	public Long numberToLong() {
+		return numberToLong.convert(number);
+	}
+
+	@Benchmark
+	public long numberToLongDriver() throws SQLException {
+		return number.longValue();
+	}
+
+	@Benchmark
+	public BigDecimal numberToBigDecimal() {
+		return numberToBigDecimal.convert(decimal);
+	}
+
+	@Benchmark
+	public BigDecimal numberToBigDecimalDriver() throws SQLException {
+		return decimal.bigDecimalValue();
+	}
+
+	private static String buildMerge(int rows) {
+		StringBuilder builder = new StringBuilder("insert into user_logins (id, username, logins, modified) values ");
+		for (int i = 0; i < rows; i++) {
+			if (i > 0) {
+				builder.append(", ");
+			}
+			builder.append("(:id" + i + ", :username" + i + ", 1, :modified" + i + ")");
+		}
+		builder.append(" on conflict (id) do update set logins = user_logins.logins + excluded.logins, modified = excluded.modified");
+		return builder.toString();
+	}
+
+	private static Structure buildWideType(int fields) {
+		Structure structure = new Structure();
+		structure.setName("wideEvent");
+		structure.setProperty(new ValueImpl<String>(CollectionNameProperty.getInstance(), "wide_events"));
+		structure.add(new SimpleElementImpl<String>("id", SimpleTypeWrapperFactory.getInstance().getWrapper().wrap(String.class), structure));
+		for (int i = 0; i < fields; i++) {
+			switch (i % 5) {
+				case 0:
+					structure.add(new SimpleElementImpl<String>("text" + i, SimpleTypeWrapperFactory.getInstance().getWrapper().wrap(String.class), structure,
+						new ValueImpl<Integer>(MaxLengthProperty.getInstance(), i % 2 == 0 ? 255 : 10000)));
+				break;
+				case 1:
+					structure.add(new SimpleElementImpl<Long>("number" + i, SimpleTypeWrapperFactory.getInstance().getWrapper().wrap(Long.class), structure,
+						new ValueImpl<Boolean>(IndexedProperty.getInstance(), true)));
+				break;
+				case 2:
+					structure.add(new SimpleElementImpl<Date>("moment" + i, SimpleTypeWrapperFactory.getInstance().getWrapper().wrap(Date.class), structure));
+				break;
+				case 3:
+					structure.add(new SimpleElementImpl<Boolean>("flag" + i, SimpleTypeWrapperFactory.getInstance().getWrapper().wrap(Boolean.class), structure));
+				break;
+				case 4:
+					structure.add(new SimpleElementImpl<BigDecimal>("amount" + i, SimpleTypeWrapperFactory.getInstance().getWrapper().wrap(BigDecimal.class), structure,
+						new ValueImpl<Integer>(MinOccursProperty.getInstance(), 0)));
+				break;
+			}
+		}
+		return structure;
+	}
+
+	public static void main(String...args) throws RunnerException {
+		OptionsBuilder options = new OptionsBuilder();
+		options.include(OracleBenchmarks.class.getSimpleName() + (args.length > 0 ? "." + args[0] : ""));
+		options.addProfiler(GCProfiler.class);
+		new Runner(options.build()).run();
+	}
+}
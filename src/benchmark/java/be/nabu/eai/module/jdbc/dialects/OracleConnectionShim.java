@@ -0,0 +1,127 @@
+/*
+* Copyright (C) 2016 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.eai.module.jdbc.dialects;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import oracle.jdbc.OracleConnection;
+
+/**
+ * Makes a connection of another database look like an oracle connection so the dialect can be driven against e.g. H2 in oracle mode.
+ * 
+ * The standard jdbc methods are passed to the actual connection, of the oracle specific methods we only support what the dialect uses:
+ * - createOracleArray() becomes a standard createArrayOf()
+ * - the implicit statement cache settings are remembered but have no effect
+ * Anything else throws an UnsupportedOperationException so the harness does not silently measure something else.
+ */
+public class OracleConnectionShim implements InvocationHandler {
+
+	public static Connection wrap(Connection connection) throws SQLException {
+		if (connection.isWrapperFor(OracleConnection.class)) {
+			return connection;
+		}
+		OracleConnectionShim shim = new OracleConnectionShim(connection);
+		shim.proxy = (Connection) Proxy.newProxyInstance(OracleConnectionShim.class.getClassLoader(), new Class<?>[] { OracleConnection.class }, shim);
+		return shim.proxy;
+	}
+
+	private final Connection connection;
+	private volatile boolean implicitCaching;
+	private volatile int statementCacheSize;
+	private Connection proxy;
+
+	private OracleConnectionShim(Connection connection) {
+		this.connection = connection;
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		String name = method.getName();
+		if (name.equals("unwrap") && ((Class<?>) args[0]).isInstance(proxy)) {
+			return proxy;
+		}
+		else if (name.equals("isWrapperFor") && ((Class<?>) args[0]).isInstance(proxy)) {
+			return true;
+		}
+		else if (name.equals("createOracleArray")) {
+			return connection.createArrayOf((String) args[0], (Object[]) args[1]);
+		}
+		else if (name.equals("getImplicitCachingEnabled")) {
+			return implicitCaching;
+		}
+		else if (name.equals("setImplicitCachingEnabled")) {
+			implicitCaching = (Boolean) args[0];
+			return null;
+		}
+		else if (name.equals("getStatementCacheSize")) {
+			return statementCacheSize;
+		}
+		else if (name.equals("setStatementCacheSize")) {
+			statementCacheSize = (Integer) args[0];
+			return null;
+		}
+		else if (name.equals("equals")) {
+			return proxy == args[0];
+		}
+		else if (name.equals("hashCode")) {
+			return System.identityHashCode(proxy);
+		}
+		else if (!method.getDeclaringClass().isInstance(connection)) {
+			throw new UnsupportedOperationException("Not supported by the shim: " + method);
+		}
+		Object result = invokeOn(connection, method, args);
+		// the dialect gets the connection from the statement, it has to be the shim as well
+		if (result instanceof PreparedStatement) {
+			result = wrap((PreparedStatement) result);
+		}
+		return result;
+	}
+
+	private PreparedStatement wrap(final PreparedStatement statement) {
+		return (PreparedStatement) Proxy.newProxyInstance(OracleConnectionShim.class.getClassLoader(), new Class<?>[] { PreparedStatement.class }, new InvocationHandler() {
+			@Override
+			public Object invoke(Object statementProxy, Method method, Object[] args) throws Throwable {
+				if (method.getName().equals("getConnection")) {
+					return proxy;
+				}
+				else if (method.getName().equals("equals")) {
+					return statementProxy == args[0];
+				}
+				else if (method.getName().equals("hashCode")) {
+					return System.identityHashCode(statementProxy);
+				}
+				return invokeOn(statement, method, args);
+			}
+		});
+	}
+
+	private static Object invokeOn(Object target, Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		}
+		catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+}
@@ -0,0 +1,423 @@
+/*
+* Copyright (C) 2016 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.eai.module.jdbc.dialects;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import be.nabu.libs.property.ValueImpl;
+import be.nabu.libs.types.SimpleTypeWrapperFactory;
+import be.nabu.libs.types.api.ComplexContent;
+import be.nabu.libs.types.api.Element;
+import be.nabu.libs.types.base.SimpleElementImpl;
+import be.nabu.libs.types.properties.CollectionNameProperty;
+import be.nabu.libs.types.properties.MaxLengthProperty;
+import be.nabu.libs.types.properties.MinOccursProperty;
+import be.nabu.libs.types.structure.Structure;
+import oracle.sql.TIMESTAMP;
+
+/**
+ * Drives the dialect through real jdbc: rewrite, bind, execute and fetch, for a number of workloads at increasing concurrency.
+ * 
+ * By default it runs against an in-memory H2 database in oracle mode (the H2 driver is part of the benchmarks profile), connections that are not oracle connections are wrapped in the OracleConnectionShim.
+ * H2 is a stand-in: the numbers are only meaningful relative to a previous run on the same machine, not as a prediction of what oracle does.
+ * You can point it to a real oracle database to get those numbers.
+ * 
+ * Usage: mvn -Pbenchmarks compile exec:exec -Dexec.args="-Dharness.url=... -Dharness.threads=1,4,16,64 -Dharness.seconds=10 -classpath %classpath be.nabu.eai.module.jdbc.dialects.OracleLoadHarness"
+ */
+public class OracleLoadHarness {
+
+	private static final Pattern NAMED_PARAMETER = Pattern.compile("(?<![:\\w]):([a-zA-Z_]\\w*)");
+	// the latencies we keep per thread, after that we stop recording (but keep running)
+	private static final int MAX_SAMPLES = 1000000;
+	private static final int BATCH_SIZE = 50;
+	private static final int PAGE_SIZE = 50;
+	private static final int LOB_SIZE = 200000;
+	// the rows we insert before we start, the upserts update these
+	private static final int SEED_ROWS = 5000;
+
+	// the pagination shapes: the original double rownum wrap, the current rownum fallback (pre 12c) and offset/fetch (12c+)
+	private enum Pagination {
+		OLD, ROWNUM, ROW_LIMITING
+	}
+
+	private interface Workload {
+		// returns the amount of rows processed
+		public int run(Connection connection) throws Exception;
+	}
+
+	private final Oracle dialect = new Oracle();
+	private final Structure type = buildType();
+	private final String url, username, password;
+	private final String payload;
+	// the amount of rows in the table, used to pick pages
+	private final AtomicInteger rowCount = new AtomicInteger();
+
+	public OracleLoadHarness(String url, String username, String password) {
+		this.url = url;
+		this.username = username;
+		this.password = password;
+		char [] characters = new char[LOB_SIZE];
+		Arrays.fill(characters, 'x');
+		this.payload = new String(characters);
+	}
+
+	public static void main(String...args) throws Exception {
+		String url = System.getProperty("harness.url", "jdbc:h2:mem:harness;MODE=Oracle;DB_CLOSE_DELAY=-1");
+		OracleLoadHarness harness = new OracleLoadHarness(url, System.getProperty("harness.username"), System.getProperty("harness.password"));
+		int seconds = Integer.parseInt(System.getProperty("harness.seconds", "10"));
+		List<Integer> threads = new ArrayList<Integer>();
+		for (String thread : System.getProperty("harness.threads", "1,4,16,64").split("\\s*,\\s*")) {
+			threads.add(Integer.parseInt(thread));
+		}
+		harness.setup();
+		System.out.println(String.format("%-12s %8s %14s %12s %12s %16s", "workload", "threads", "rows/s", "p50 (us)", "p99 (us)", "bytes/row"));
+		for (int amount : threads) {
+			harness.run("insert", harness.insert(), amount, seconds);
+			harness.run("upsert", harness.upsert(), amount, seconds);
+			harness.run("paged", harness.pagedSelect(), amount, seconds);
+			// the pagination shapes compared on the last pages of the table
+			harness.run("deep-old", harness.deepPage(Pagination.OLD), amount, seconds);
+			harness.run("deep-rownum", harness.deepPage(Pagination.ROWNUM), amount, seconds);
+			harness.run("deep-fetch", harness.deepPage(Pagination.ROW_LIMITING), amount, seconds);
+			harness.run("lob", harness.lob(), amount, seconds);
+		}
+	}
+
+	private Connection connect() throws SQLException {
+		Connection connection = username == null ? DriverManager.getConnection(url) : DriverManager.getConnection(url, username, password);
+		connection.setAutoCommit(true);
+		return OracleConnectionShim.wrap(connection);
+	}
+
+	private void setup() throws Exception {
+		Connection connection = connect();
+		try {
+			Statement statement = connection.createStatement();
+			try {
+				try {
+					statement.execute("drop table load_items");
+				}
+				catch (SQLException e) {
+					// does not exist yet
+				}
+				for (String ddl : dialect.buildCreateSQL(type, false).split(";\\s*\\n")) {
+					if (!ddl.trim().isEmpty()) {
+						statement.execute(ddl.trim().replaceAll(";$", ""));
+					}
+				}
+			}
+			finally {
+				statement.close();
+			}
+			// the upserts and paged selects need something to work with
+			Bound bound = bind("insert into load_items (id, name, size, created, active) values (:id, :name, :size, :created, :active)");
+			PreparedStatement insert = connection.prepareStatement(bound.sql);
+			try {
+				for (int i = 0; i < SEED_ROWS; i++) {
+					bound.set(insert, newRow("seed-" + i, false));
+					insert.addBatch();
+				}
+				insert.executeBatch();
+			}
+			finally {
+				insert.close();
+			}
+			rowCount.set(SEED_ROWS);
+		}
+		finally {
+			connection.close();
+		}
+	}
+
+	private Workload insert() {
+		final Bound bound = bind("insert into load_items (id, name, size, created, active, payload) values (:id, :name, :size, :created, :active, :payload)");
+		return new Workload() {
+			@Override
+			public int run(Connection connection) throws Exception {
+				PreparedStatement statement = connection.prepareStatement(bound.sql);
+				try {
+					for (int i = 0; i < BATCH_SIZE; i++) {
+						bound.set(statement, newRow(null, false));
+						statement.addBatch();
+					}
+					statement.executeBatch();
+				}
+				finally {
+					statement.close();
+				}
+				rowCount.addAndGet(BATCH_SIZE);
+				return BATCH_SIZE;
+			}
+		};
+	}
+
+	private Workload upsert() {
+		final Bound bound = bind("insert into load_items (id, name, size, created, active) values (:id, :name, :size, :created, :active) on conflict (id) do update set name = excluded.name, size = excluded.size, active = excluded.active");
+		return new Workload() {
+			@Override
+			public int run(Connection connection) throws Exception {
+				PreparedStatement statement = connection.prepareStatement(bound.sql);
+				try {
+					// half of them are updates of the rows we inserted at startup
+					ThreadLocalRandom random = ThreadLocalRandom.current();
+					String id = random.nextBoolean() ? "seed-" + random.nextInt(SEED_ROWS) : null;
+					bound.set(statement, newRow(id, false));
+					return statement.executeUpdate();
+				}
+				finally {
+					statement.close();
+				}
+			}
+		};
+	}
+
+	private Workload pagedSelect() {
+		final OracleTimestampToDate converter = new OracleTimestampToDate();
+		return new Workload() {
+			@Override
+			public int run(Connection connection) throws Exception {
+				long offset = ThreadLocalRandom.current().nextInt(Math.max(1, rowCount.get() - PAGE_SIZE));
+				Bound bound = bind(dialect.limit("select id, name, size, created, active from load_items order by id", offset, PAGE_SIZE));
+				return select(connection, bound, converter);
+			}
+		};
+	}
+
+	// a page from the last 10% of the table, this is where materializing the earlier rows hurts
+	private Workload deepPage(final Pagination pagination) {
+		final OracleTimestampToDate converter = new OracleTimestampToDate();
+		return new Workload() {
+			@Override
+			public int run(Connection connection) throws Exception {
+				int total = rowCount.get();
+				long offset = Math.max(0, total - PAGE_SIZE - ThreadLocalRandom.current().nextInt(Math.max(1, total / 10)));
+				String sql = "select id, name, size, created, active from load_items order by id";
+				switch (pagination) {
+					case OLD:
+						sql = "select results.*, rownum as record_number from (" + sql + ") results where rownum <= " + (offset + PAGE_SIZE);
+						sql = "select results.* from (" + sql + ") results where record_number >= " + offset;
+					break;
+					default:
+						sql = dialect.limit(sql, offset, PAGE_SIZE, pagination == Pagination.ROW_LIMITING);
+				}
+				return select(connection, bind(sql), converter);
+			}
+		};
+	}
+
+	private int select(Connection connection, Bound bound, OracleTimestampToDate converter) throws Exception {
+		PreparedStatement statement = connection.prepareStatement(bound.sql);
+		try {
+			ResultSet result = statement.executeQuery();
+			OracleResultSetPlan plan = dialect.getResultSetPlan(bound.sql, type, result);
+			int rows = 0;
+			while (result.next()) {
+				ComplexContent row = type.newInstance();
+				plan.extract(result, row);
+				// other databases return a plain timestamp, we run it through the oracle converter to include it in the measurement
+				Date created = (Date) row.get("created");
+				if (created != null) {
+					row.set("created", converter.convert(new TIMESTAMP(new Timestamp(created.getTime()))));
+				}
+				rows++;
+			}
+			return rows;
+		}
+		finally {
+			statement.close();
+		}
+	}
+
+	private Workload lob() {
+		final Bound bound = bind("insert into load_items (id, name, size, created, active, payload) values (:id, :name, :size, :created, :active, :payload)");
+		return new Workload() {
+			@Override
+			public int run(Connection connection) throws Exception {
+				PreparedStatement statement = connection.prepareStatement(bound.sql);
+				try {
+					bound.set(statement, newRow(null, true));
+					return statement.executeUpdate();
+				}
+				finally {
+					statement.close();
+				}
+			}
+		};
+	}
+
+	private ComplexContent newRow(String id, boolean lob) {
+		ComplexContent row = type.newInstance();
+		row.set("id", id == null ? UUID.randomUUID().toString() : id);
+		row.set("name", "name " + ThreadLocalRandom.current().nextInt(1000));
+		row.set("size", ThreadLocalRandom.current().nextLong(1000000));
+		row.set("created", new Date());
+		row.set("active", ThreadLocalRandom.current().nextBoolean());
+		if (lob) {
+			row.set("payload", payload);
+		}
+		return row;
+	}
+
+	private void run(String name, final Workload workload, int threads, int seconds) throws InterruptedException {
+		final long end = System.nanoTime() + seconds * 1000000000l;
+		// we don't know the throughput up front, the sample arrays grow up to MAX_SAMPLES
+		final long [][] samples = new long[threads][];
+		final int [] sampleCounts = new int[threads];
+		final long [] rows = new long[threads];
+		final long [] allocated = new long[threads];
+		final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+		final CountDownLatch latch = new CountDownLatch(threads);
+		final com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		for (int i = 0; i < threads; i++) {
+			final int thread = i;
+			samples[thread] = new long[10000];
+			new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						Connection connection = connect();
+						try {
+							long allocatedBefore = threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+							while (System.nanoTime() < end && failure.get() == null) {
+								long started = System.nanoTime();
+								rows[thread] += workload.run(connection);
+								long duration = System.nanoTime() - started;
+								if (sampleCounts[thread] == samples[thread].length && samples[thread].length < MAX_SAMPLES) {
+									samples[thread] = Arrays.copyOf(samples[thread], Math.min(MAX_SAMPLES, samples[thread].length * 2));
+								}
+								if (sampleCounts[thread] < samples[thread].length) {
+									samples[thread][sampleCounts[thread]++] = duration;
+								}
+							}
+							allocated[thread] = threadBean.getThreadAllocatedBytes(Thread.currentThread().getId()) - allocatedBefore;
+						}
+						finally {
+							connection.close();
+						}
+					}
+					catch (Exception e) {
+						failure.compareAndSet(null, e);
+					}
+					finally {
+						latch.countDown();
+					}
+				}
+			}, "harness-" + name + "-" + thread).start();
+		}
+		latch.await();
+		if (failure.get() != null) {
+			System.out.println(String.format("%-12s %8d failed: %s", name, threads, failure.get()));
+			return;
+		}
+		long totalRows = 0, totalAllocated = 0;
+		int totalSamples = 0;
+		for (int i = 0; i < threads; i++) {
+			totalRows += rows[i];
+			totalAllocated += allocated[i];
+			totalSamples += sampleCounts[i];
+		}
+		long [] all = new long[totalSamples];
+		int offset = 0;
+		for (int i = 0; i < threads; i++) {
+			System.arraycopy(samples[i], 0, all, offset, sampleCounts[i]);
+			offset += sampleCounts[i];
+		}
+		Arrays.sort(all);
+		System.out.println(String.format("%-12s %8d %14.1f %12.1f %12.1f %16d", name, threads, totalRows / (double) seconds, 
+			percentile(all, 0.5) / 1000.0, percentile(all, 0.99) / 1000.0, totalRows == 0 ? 0 : totalAllocated / totalRows));
+	}
+
+	private static long percentile(long [] sorted, double percentile) {
+		return sorted.length == 0 ? 0 : sorted[Math.min(sorted.length - 1, (int) Math.ceil(percentile * sorted.length) - 1)];
+	}
+
+	// a rewritten statement with the named parameters replaced by positional ones, as the jdbc service does it
+	private Bound bind(String sql) {
+		String rewritten = dialect.rewrite(sql, type, type);
+		Matcher matcher = NAMED_PARAMETER.matcher(rewritten);
+		List<Element<?>> parameters = new ArrayList<Element<?>>();
+		StringBuffer buffer = new StringBuffer();
+		while (matcher.find()) {
+			Element<?> element = type.get(matcher.group(1));
+			if (element == null) {
+				throw new IllegalArgumentException("Unknown parameter: " + matcher.group(1));
+			}
+			parameters.add(element);
+			matcher.appendReplacement(buffer, "?");
+		}
+		matcher.appendTail(buffer);
+		return new Bound(buffer.toString(), parameters);
+	}
+
+	private class Bound {
+		private final String sql;
+		private final List<Element<?>> parameters;
+
+		public Bound(String sql, List<Element<?>> parameters) {
+			this.sql = sql;
+			this.parameters = parameters;
+		}
+
+		public void set(PreparedStatement statement, ComplexContent row) throws Exception {
+			for (int i = 0; i < parameters.size(); i++) {
+				Element<?> element = parameters.get(i);
+				Object value = row.get(element.getName());
+				if (value == null) {
+					statement.setNull(i + 1, dialect.getSQLType(element));
+				}
+				else {
+					dialect.setObject(statement, element, i + 1, value, sql);
+				}
+			}
+		}
+	}
+
+	private static Structure buildType() {
+		Structure structure = new Structure();
+		structure.setName("loadItem");
+		structure.setProperty(new ValueImpl<String>(CollectionNameProperty.getInstance(), "load_items"));
+		structure.add(new SimpleElementImpl<String>("id", SimpleTypeWrapperFactory.getInstance().getWrapper().wrap(String.class), structure,
+			new ValueImpl<Integer>(MaxLengthProperty.getInstance(), 64)));
+		structure.add(new SimpleElementImpl<String>("name", SimpleTypeWrapperFactory.getInstance().getWrapper().wrap(String.class), structure,
+			new ValueImpl<Integer>(MaxLengthProperty.getInstance(), 255)));
+		structure.add(new SimpleElementImpl<Long>("size", SimpleTypeWrapperFactory.getInstance().getWrapper().wrap(Long.class), structure));
+		structure.add(new SimpleElementImpl<Date>("created", SimpleTypeWrapperFactory.getInstance().getWrapper().wrap(Date.class), structure));
+		structure.add(new SimpleElementImpl<Boolean>("active", SimpleTypeWrapperFactory.getInstance().getWrapper().wrap(Boolean.class), structure));
+		structure.add(new SimpleElementImpl<String>("payload", SimpleTypeWrapperFactory.getInstance().getWrapper().wrap(String.class), structure,
+			new ValueImpl<Integer>(MaxLengthProperty.getInstance(), 1000000), new ValueImpl<Integer>(MinOccursProperty.getInstance(), 0)));
+		return structure;
+	}
+}
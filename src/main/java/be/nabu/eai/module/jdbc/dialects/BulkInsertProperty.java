@@ -0,0 +1,42 @@
+/*
+* Copyright (C) 2016 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.eai.module.jdbc.dialects;
+
+import be.nabu.libs.types.properties.SimpleProperty;
+
+/**
+ * Whether batched inserts for this type (the input of an insert service or the table type itself) are direct path inserts (APPEND_VALUES): the table is locked until commit and the rows can not be read in the same transaction.
+ * This only applies to statements that are rewritten as a batch (see Oracle.rewrite(String, ComplexType, ComplexType, boolean)), single row inserts are never direct path inserts.
+ */
+public class BulkInsertProperty extends SimpleProperty<Boolean> {
+
+	private static BulkInsertProperty instance = new BulkInsertProperty();
+
+	public static BulkInsertProperty getInstance() {
+		return instance;
+	}
+
+	public BulkInsertProperty() {
+		super(Boolean.class);
+	}
+
+	@Override
+	public String getName() {
+		return "bulkInsert";
+	}
+}
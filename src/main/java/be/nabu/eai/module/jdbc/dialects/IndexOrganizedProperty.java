@@ -0,0 +1,41 @@
+/*
+* Copyright (C) 2016 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.eai.module.jdbc.dialects;
+
+import be.nabu.libs.types.properties.SimpleProperty;
+
+/**
+ * Whether the table is stored as an index organized table, this is interesting for small lookup tables that are always accessed by primary key.
+ */
+public class IndexOrganizedProperty extends SimpleProperty<Boolean> {
+
+	private static IndexOrganizedProperty instance = new IndexOrganizedProperty();
+
+	public static IndexOrganizedProperty getInstance() {
+		return instance;
+	}
+
+	public IndexOrganizedProperty() {
+		super(Boolean.class);
+	}
+
+	@Override
+	public String getName() {
+		return "indexOrganized";
+	}
+}
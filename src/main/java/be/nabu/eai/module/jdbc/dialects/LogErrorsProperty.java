@@ -0,0 +1,41 @@
+/*
+* Copyright (C) 2016 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.eai.module.jdbc.dialects;
+
+import be.nabu.libs.types.properties.SimpleProperty;
+
+/**
+ * Whether inserts for this type log the rows that fail to the error log table (see Oracle.buildErrorLogSQL) instead of failing the statement, the error log table is generated along with the table.
+ */
+public class LogErrorsProperty extends SimpleProperty<Boolean> {
+
+	private static LogErrorsProperty instance = new LogErrorsProperty();
+
+	public static LogErrorsProperty getInstance() {
+		return instance;
+	}
+
+	public LogErrorsProperty() {
+		super(Boolean.class);
+	}
+
+	@Override
+	public String getName() {
+		return "logErrors";
+	}
+}
@@ -17,8 +17,7 @@
 
 package be.nabu.eai.module.jdbc.dialects;
 
-import java.io.IOException;
-import java.io.Writer;
+import java.io.StringReader;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.net.URI;
@@ -26,30 +25,48 @@ import java.sql.Array;
 import java.sql.Clob;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.TimeZone;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import oracle.jdbc.OracleConnection;
+import be.nabu.eai.module.jdbc.pool.JDBCPoolArtifact;
 import be.nabu.eai.repository.EAIRepositoryUtils;
+import be.nabu.eai.repository.EAIResourceRepository;
 import be.nabu.libs.converter.ConverterFactory;
 import be.nabu.libs.converter.api.Converter;
 import be.nabu.libs.evaluator.QueryParser;
 import be.nabu.libs.evaluator.QueryPart;
 import be.nabu.libs.property.ValueUtils;
+import be.nabu.libs.property.api.Property;
 import be.nabu.libs.property.api.Value;
 import be.nabu.libs.services.api.ServiceException;
 import be.nabu.libs.services.jdbc.JDBCUtils;
 import be.nabu.libs.services.jdbc.api.SQLDialect;
+import be.nabu.libs.types.ComplexContentWrapperFactory;
 import be.nabu.libs.types.DefinedTypeResolverFactory;
+import be.nabu.libs.types.TypeUtils;
 import be.nabu.libs.types.api.ComplexContent;
 import be.nabu.libs.types.api.ComplexType;
 import be.nabu.libs.types.api.DefinedType;
@@ -68,12 +85,78 @@ import be.nabu.libs.types.properties.UniqueProperty;
 
 public class Oracle implements SQLDialect {
 
-	private static List<String> reserved = Arrays.asList("state", "audit", "comment", "number", "resource", "size", "uid", "date", "session", "initial");
 	private static final Boolean TRUNCATE_FIELDS = Boolean.parseBoolean(System.getProperty("oracle.truncateFields", "false"));
+	// the amount of rewritten statements we keep around, set to 0 to disable caching
+	private static final Integer REWRITE_CACHE_SIZE = Integer.parseInt(System.getProperty("oracle.rewriteCacheSize", "1024"));
+	private static final OracleRewriteCache rewriteCache = REWRITE_CACHE_SIZE > 0 ? new OracleRewriteCache(REWRITE_CACHE_SIZE) : null;
+	// whether we pad multi-row upserts to a fixed set of sizes so they share cursors
+	private static final Boolean BUCKET_MERGES = Boolean.parseBoolean(System.getProperty("oracle.bucketMerges", "false"));
+	// the merge counter per rewritten merge statement
+	private static final int MAX_MERGE_METRICS = 10000;
+	private static final Map<String, String> mergeMetrics = new ConcurrentHashMap<String, String>();
+	// we stop tracking shapes after this, at that point you have bigger problems
+	private static final int MAX_MERGE_SHAPES = 10000;
+	private static final Pattern NAMED_PARAMETER = Pattern.compile("(?<![:\\w]):[\\w]+");
+	private static final Set<String> mergeShapes = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	private static final DateTimeFormatter TIMESTAMP_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneOffset.UTC);
+	private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneOffset.UTC);
+	// the size of the chunks of long strings in literals, a literal can be at most 4000 bytes so this leaves room for multibyte characters
+	private static final int CLOB_CHUNK_SIZE = 1000;
+	// the maximum size of a string literal
+	private static final int MAX_LITERAL_BYTES = 4000;
+	private static final DateTimeFormatter JSON_TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS").withZone(ZoneOffset.UTC);
+	// whether we want to load the reserved words from the database rather than only using the bundled list
+	private static final Boolean LOAD_RESERVED_WORDS = Boolean.parseBoolean(System.getProperty("oracle.loadReservedWords", "false"));
+	
+	// force a server version rather than detecting it
+	private static final Integer SERVER_VERSION = System.getProperty("oracle.version") == null ? null : Integer.parseInt(System.getProperty("oracle.version"));
+	
+	// strings up to this length are streamed, longer strings use a temporary lob
+	private static final Integer CLOB_STREAM_THRESHOLD = Integer.parseInt(System.getProperty("oracle.clobStreamThreshold", "1048576"));
+	
+	// enables the implicit statement cache with this size on connections that don't have it enabled through the connection properties
+	private static final Integer STATEMENT_CACHE_SIZE = System.getProperty("oracle.statementCacheSize") == null ? null : Integer.parseInt(System.getProperty("oracle.statementCacheSize"));
+	
+	// the result set plans we keep around, when we go over this we start over
+	private static final int MAX_RESULT_SET_PLANS = 4096;
+	private static final Map<Map.Entry<String, ComplexType>, OracleResultSetPlan> resultSetPlans = new ConcurrentHashMap<Map.Entry<String, ComplexType>, OracleResultSetPlan>();
+	
+	private volatile boolean initialized;
+	private final OracleMetrics metrics = new OracleMetrics();
+	private final OracleStatementCacheTracker statementCacheTracker = new OracleStatementCacheTracker(STATEMENT_CACHE_SIZE, metrics);
+	private final OracleLobTracker lobTracker = new OracleLobTracker(metrics);
+	private final OracleAsyncExecutor asyncExecutor = new OracleAsyncExecutor();
+	private volatile Integer serverVersion;
+	private volatile boolean versionWarned;
+	
+	// whether simple lists are bound as an oracle collection, this requires a collection type per field, e.g. for a field "ids": create type IDS_ARRAY as table of varchar2(255)
+	private static final Boolean ARRAY_SUPPORT = Boolean.parseBoolean(System.getProperty("oracle.arraySupport", "false"));
+	
+	// the collection type names per element name
+	private static final Map<String, String> arrayTypeNames = new ConcurrentHashMap<String, String>();
+	
+	// a single row insert with a values clause, the table name can be qualified with a schema
+	private static final Pattern INSERT_VALUES = Pattern.compile("(?is)^(\\s*insert)(\\s+into\\s+(~?(?:\"?[\\w$#]+\"?\\.)?\"?[\\w$#]+\"?)\\s*(?:\\([^)]*\\))?\\s*values\\s*\\(.*?)[\\s;]*$");
+	private static final Pattern RETURNING = Pattern.compile("(?i)\\breturning\\b");
+	// the leading select of a statement with an optional hint
+	private static final Pattern SELECT_HINT = Pattern.compile("(?is)^(\\s*select\\b)(\\s*/\\*\\+)?");
+	
+	// the cache size of generated sequences and identity columns, oracle defaults to 20
+	private static final Integer SEQUENCE_CACHE = System.getProperty("oracle.sequenceCache") == null ? null : Integer.parseInt(System.getProperty("oracle.sequenceCache"));
+	// generated fields become identity columns instead of a sequence with a default, this requires 12c
+	private static final Boolean IDENTITY_COLUMNS = Boolean.parseBoolean(System.getProperty("oracle.identityColumns", "false"));
+	// the amount of values a sequence allocator reserves in one round trip
+	private static final Integer SEQUENCE_BLOCK_SIZE = Integer.parseInt(System.getProperty("oracle.sequenceBlockSize", "100"));
+	private final Map<String, OracleSequenceAllocator> sequenceAllocators = new ConcurrentHashMap<String, OracleSequenceAllocator>();
+	
+	// generate schema changes that don't lock or rewrite large tables: columns are set unused instead of dropped, not null constraints are validated separately and indexes are built online
+	private static final Boolean ONLINE_SCHEMA_CHANGES = Boolean.parseBoolean(System.getProperty("oracle.onlineSchemaChanges", "false"));
+	// the parallelism for index builds in online mode, the index is set back to noparallel afterwards
+	private static final Integer INDEX_PARALLELISM = System.getProperty("oracle.indexParallelism") == null ? null : Integer.parseInt(System.getProperty("oracle.indexParallelism"));
 	
 	@Override
 	public boolean hasArraySupport(Element<?> element) {
-		return false;
+		return ARRAY_SUPPORT && element.getType() instanceof SimpleType && getArraySQLName(element) != null;
 	}
 	
 	@Override
@@ -103,6 +186,12 @@ public class Oracle implements SQLDialect {
 		tableName = quoteReserved(tableName.toLowerCase());
 		String columnName = element.replaceAll("([A-Z]+)", "_$1").replaceFirst("^_", "").toLowerCase();
 		columnName = quoteReserved(columnName);
+		// validating a not null constraint scans the whole table while blocking writes, in online mode we enable it for new rows first and validate the existing rows in a separate step that allows concurrent dml
+		if (ONLINE_SCHEMA_CHANGES && !nillable) {
+			String constraintName = (tableName + "_" + columnName).replace("\"", "") + "_nn";
+			return "alter table " + tableName + " modify " + columnName + " constraint " + constraintName + " not null enable novalidate;\n"
+				+ "alter table " + tableName + " modify constraint " + constraintName + " validate;";
+		}
 		// this is the default syntax that works on postgres & h2 and likely some others...
 		return "alter table " + tableName + " modify " + columnName + " " + (nillable ? "null" : "not null") + ";";
 	}
@@ -135,69 +224,247 @@ public class Oracle implements SQLDialect {
 
 	@Override
 	public void setArray(PreparedStatement statement, Element<?> element, int index, Collection<?> collection) throws SQLException {
+		initialize(statement.getConnection());
 		String sqlName = getArraySQLName(element);
 		if (sqlName == null) {
 			throw new IllegalArgumentException("Could not determine the oracle sql name of: " + element.getName());
 		}
+		String typeName = arrayTypeNames.get(element.getName());
+		if (typeName == null) {
+			typeName = (EAIRepositoryUtils.uncamelify(element.getName()) + "_array").toUpperCase();
+			arrayTypeNames.put(element.getName(), typeName);
+		}
+		// a null collection, not a null scalar, otherwise constructs like "table(:list)" fail
 		if (collection.isEmpty()) {
-			statement.setNull(index, getSQLType(element), sqlName);
+			statement.setNull(index, Types.ARRAY, typeName);
 		}
 		else {
-			Connection connection = statement.getConnection();
-			if (!(connection instanceof OracleConnection)) {
-				connection = connection.unwrap(OracleConnection.class);
-			}
-			String typeName = (EAIRepositoryUtils.uncamelify(element.getName()) + "_array").toUpperCase();
+			OracleConnection connection = getOracleConnection(statement.getConnection());
 //			Statement create = statement.getConnection().createStatement();
 //			create.execute("create type " + typeName + " is varray(" + collection.size() + ") of " + sqlName);
-			Array array = ((OracleConnection) connection).createOracleArray(typeName, collection.toArray());
+			Array array = connection.createOracleArray(typeName, collection.toArray());
 			statement.setArray(index, array);
+			metrics.increment(OracleMetrics.ARRAY_BIND);
 		}
 		// this is deprecated, presumably since 11.2.0.5.0 when the above stuff was added
 //		ARRAY array = oracleConnection.createARRAY(getSQLName(element), collection.toArray());
 //		((OraclePreparedStatement) statement).setARRAY(index, array);
 	}
 	
+	// the pool hands out a new proxy for every checkout, caching the unwrapped connection per proxy does not help and only retains them
+	private OracleConnection getOracleConnection(Connection connection) throws SQLException {
+		return connection instanceof OracleConnection ? (OracleConnection) connection : connection.unwrap(OracleConnection.class);
+	}
+	
 	@Override
 	public String rewrite(String sql, ComplexType input, ComplexType output) {
-		// rewrite booleans to integers
+		return rewrite(sql, input, output, false);
+	}
+	
+	/**
+	 * Code that executes the statement as a batch (addBatch() or array binding) can tell us so, only then do inserts for a type with the bulkInsert property become direct path inserts.
+	 * A direct path insert locks the table until commit and the rows can not be read in the same transaction (ORA-12838), which is not what a single row insert expects.
+	 * The jdbc services use the plain rewrite() and never get direct path inserts.
+	 */
+	public String rewrite(String sql, ComplexType input, ComplexType output, boolean batched) {
+		// the results of this statement are converted on this thread, the converters count in the metrics of this pool
+		OracleMetrics.setCurrent(metrics);
+		metrics.publishIfDue();
+		// only resolved when we need it: for the metrics or when we actually rewrite
+		Boolean resultCached = null;
+		if (metrics.isEnabled()) {
+			resultCached = isResultCached(input, output);
+			if (resultCached) {
+				metrics.increment(OracleMetrics.RESULT_CACHE);
+			}
+		}
+		String rewritten;
+		if (sql == null || rewriteCache == null) {
+			rewritten = rewriteUncached(sql, input, output, resultCached, batched);
+		}
+		else {
+			rewritten = rewriteCache.get(sql, input, output, batched);
+			if (rewritten == null) {
+				metrics.increment(OracleMetrics.REWRITE_CACHE_MISS);
+				rewritten = rewriteUncached(sql, input, output, resultCached, batched);
+				rewriteCache.put(sql, input, output, batched, rewritten);
+			}
+			else {
+				metrics.increment(OracleMetrics.REWRITE_CACHE_HIT);
+			}
+		}
+		// the driver caches on the rewritten statement
+		statementCacheTracker.record(rewritten);
+		if (rewritten != null && metrics.isEnabled() && rewritten.startsWith("merge into ")) {
+			String metric = mergeMetrics.get(rewritten);
+			if (metric != null) {
+				metrics.increment(metric);
+			}
+		}
+		return rewritten;
+	}
+	
+	public static OracleRewriteCache getRewriteCache() {
+		return rewriteCache;
+	}
+	
+	// package private for the benchmarks
+	String rewriteUncached(String sql, ComplexType input, ComplexType output, Boolean resultCached, boolean batched) {
+		long started = metrics.start();
+		try {
+			return rewriteUncachedTimed(sql, input, output, resultCached == null ? isResultCached(input, output) : resultCached, batched);
+		}
+		finally {
+			metrics.stop(OracleMetrics.REWRITE, started);
+		}
+	}
+	
+	private String rewriteUncachedTimed(String sql, ComplexType input, ComplexType output, boolean resultCached, boolean batched) {
+		// rewrite booleans to integers and quote reserved words in a single pass
 		// perhaps too broad...
-		sql = sql.replaceAll("(?<!')\\btrue\\b(?!')", "1");
-		sql = sql.replaceAll("(?<!')\\bfalse\\b(?!')", "0");
-		
-		// we have a merge statement
-		if (sql.matches("(?i)(?s)[\\s]*\\binsert into\\b.*\\bon conflict\\b.*\\bdo update\\b.*")) {
+		OracleStatementScanner scanner = new OracleStatementScanner(true, true);
+		if (ARRAY_SUPPORT) {
+			scanner.setArrays(getArrayParameters(input));
+		}
+		String rewritten = scanner.scan(sql);
+		// we have a merge statement, the merge parser needs the statement without quoted identifiers
+		if (scanner.isMerge()) {
 			try {
-				sql = rewriteMerge(sql);
+				String [] metric = new String[1];
+				sql = rewriteMerge(new OracleStatementScanner(true, false).scan(sql), input, metric);
+				rewritten = rewriteReserved(sql);
+				// the merge is counted on every execution (see rewrite()), not only when we rewrite it
+				if (mergeMetrics.size() >= MAX_MERGE_METRICS) {
+					mergeMetrics.clear();
+				}
+				mergeMetrics.put(rewritten, metric[0]);
 			}
 			catch (ParseException e) {
 				throw new RuntimeException(e);
 			}
 		}
-		return rewriteReserved(sql);
+		else if (input != null) {
+			// these are set per type (see BulkInsertProperty and LogErrorsProperty), a global setting would also apply to the regular single row inserts of every pool
+			boolean bulkInsert = batched && isEnabled(BulkInsertProperty.getInstance(), input);
+			boolean logErrors = isEnabled(LogErrorsProperty.getInstance(), input);
+			if (bulkInsert || logErrors) {
+				rewritten = rewriteBulkInsert(rewritten, bulkInsert, logErrors);
+			}
+		}
+		if (resultCached) {
+			rewritten = rewriteResultCache(rewritten);
+		}
+		return rewritten;
 	}
 	
-	private static String rewriteReserved(String sql) {
-		if (sql != null) {
-			StringBuilder builder = new StringBuilder();
-			boolean inString = false;
-			String[] split = sql.split("\\b");
-			for (int i = 0; i < split.length; i++) {
-				String part = split[i];
-				boolean change = (part.length() - part.replace("'", "").length()) % 2 == 1;
-				if (change) {
-					inString = !inString;
-				}
-				if (inString || i == 0 || split[i - 1].trim().endsWith(":") || (i < split.length - 1 && split[i + 1].trim().startsWith("("))) {
-					builder.append(part);
+	private static boolean isEnabled(Property<Boolean> property, ComplexType type) {
+		Boolean enabled = ValueUtils.getValue(property, type.getProperties());
+		return enabled != null && enabled;
+	}
+	
+	private static boolean isResultCached(ComplexType input, ComplexType output) {
+		Boolean cached = output == null ? null : ValueUtils.getValue(ResultCacheProperty.getInstance(), output.getProperties());
+		if ((cached == null || !cached) && input != null) {
+			cached = ValueUtils.getValue(ResultCacheProperty.getInstance(), input.getProperties());
+		}
+		return cached != null && cached;
+	}
+	
+	/**
+	 * Adds the RESULT_CACHE hint to a select, if the select already has a hint it is added to it.
+	 * Other statements (including selects that start with a with clause) are left alone.
+	 */
+	private static String rewriteResultCache(String sql) {
+		Matcher matcher = SELECT_HINT.matcher(sql);
+		if (!matcher.find()) {
+			return sql;
+		}
+		if (matcher.group(2) != null) {
+			int end = sql.indexOf("*/", matcher.end(2));
+			if (end >= 0 && sql.substring(matcher.end(2), end).toUpperCase().contains("RESULT_CACHE")) {
+				return sql;
+			}
+			return sql.substring(0, matcher.end(1)) + " /*+ RESULT_CACHE " + sql.substring(matcher.end(2));
+		}
+		return sql.substring(0, matcher.end(1)) + " /*+ RESULT_CACHE */" + sql.substring(matcher.end(1));
+	}
+	
+	/**
+	 * The statistics of the server result cache, the user needs access to v$result_cache_statistics.
+	 */
+	public Map<String, Long> getResultCacheStatistics(Connection connection) throws SQLException {
+		initialize(connection);
+		Map<String, Long> statistics = new LinkedHashMap<String, Long>();
+		PreparedStatement statement = connection.prepareStatement("select name, value from v$result_cache_statistics");
+		try {
+			ResultSet result = statement.executeQuery();
+			while (result.next()) {
+				try {
+					statistics.put(result.getString(1), Long.parseLong(result.getString(2).trim()));
 				}
-				else {
-					builder.append(restrict(part));
+				catch (NumberFormatException e) {
+					// not all statistics are numeric
 				}
 			}
-			sql = builder.toString();
 		}
-		return sql;
+		finally {
+			statement.close();
+		}
+		return statistics;
+	}
+	
+	/**
+	 * Adds the APPEND_VALUES hint and/or the error logging clause to a plain "insert into ... values (...)", the table can be prefixed with "~".
+	 * Statements that already have a hint or return values are left alone, oracle does not support error logging combined with a returning clause.
+	 * Note that unique constraint violations are not logged for direct path inserts, they still fail the statement.
+	 */
+	private static String rewriteBulkInsert(String sql, boolean bulkInsert, boolean logErrors) {
+		if (sql.contains("/*+") || RETURNING.matcher(sql).find()) {
+			return sql;
+		}
+		Matcher matcher = INSERT_VALUES.matcher(sql);
+		if (!matcher.matches()) {
+			return sql;
+		}
+		StringBuilder builder = new StringBuilder(sql.length() + 96);
+		builder.append(matcher.group(1));
+		if (bulkInsert) {
+			builder.append(" /*+ APPEND_VALUES */");
+		}
+		builder.append(matcher.group(2));
+		if (logErrors) {
+			String table = matcher.group(3).replace("\"", "");
+			// the error log table gets the same prefix as the table
+			String prefix = table.startsWith("~") ? "~" : "";
+			table = table.substring(prefix.length());
+			int index = table.indexOf('.');
+			String schema = prefix + (index < 0 ? "" : table.substring(0, index + 1));
+			builder.append(" log errors into ").append(schema).append(getErrorLogTableName(table.substring(index + 1))).append(" reject limit unlimited");
+		}
+		return builder.toString();
+	}
+	
+	/**
+	 * The same naming as DBMS_ERRLOG.CREATE_ERROR_LOG uses: "err$_" followed by the first 25 characters of the table name.
+	 */
+	public static String getErrorLogTableName(String tableName) {
+		return "err$_" + (tableName.length() > 25 ? tableName.substring(0, 25) : tableName).toLowerCase();
+	}
+	
+	private Set<String> getArrayParameters(ComplexType input) {
+		Set<String> arrays = new HashSet<String>();
+		if (input != null) {
+			for (Element<?> child : TypeUtils.getAllChildren(input)) {
+				if (child.getType().isList(child.getProperties()) && hasArraySupport(child)) {
+					arrays.add(child.getName());
+				}
+			}
+		}
+		return arrays;
+	}
+	
+	private static String rewriteReserved(String sql) {
+		return sql == null ? null : new OracleStatementScanner(false, true).scan(sql);
 	}
 	
 	public static void main(String...args) throws ParseException {
@@ -257,14 +524,33 @@ public class Oracle implements SQLDialect {
 		System.out.println(rewriteMerge(sql));
 //		System.out.println(rewriteReserved(sql));
 	}
+	public static String rewriteMerge(String sql) throws ParseException {
+		return rewriteMerge(sql, null);
+	}
+	
 	/**
 	 * Example:
 	 * 
 	 * INSERT INTO user_logins (username, logins) VALUES ('Naomi',1),('James',1)
 	 * 		ON CONFLICT (username)
 	 * 		DO UPDATE SET logins = user_logins.logins + EXCLUDED.logins;
+	 * 
+	 * For batch upserts you can bind all the rows at once as a json array (see buildBatchPayload()):
+	 * 
+	 * INSERT INTO user_logins (username, logins) VALUES :rows
+	 * 		ON CONFLICT (username)
+	 * 		DO UPDATE SET logins = user_logins.logins + EXCLUDED.logins;
+	 * 
+	 * This is rewritten to a merge that reads the rows with json_table, so the statement is the same regardless of the amount of rows.
+	 * If the input has a complex element with the name of the parameter, its fields are used to type the columns, otherwise they default to varchar2.
+	 * A complex list parameter is serialized with buildBatchPayload() and bound as a clob when the statement is executed.
 	 */
-	public static String rewriteMerge(String sql) throws ParseException {
+	public static String rewriteMerge(String sql, ComplexType input) throws ParseException {
+		return rewriteMerge(sql, input, null);
+	}
+	
+	// if a metric array is passed in, the name of the merge counter is set in it
+	static String rewriteMerge(String sql, ComplexType input, String [] metric) throws ParseException {
 		List<QueryPart> parsed = QueryParser.getInstance().interpret(QueryParser.getInstance().tokenize(sql), true);
 		int counter = 0;
 		if (!validate(parsed, counter++, "insert") || !validate(parsed, counter++, "into")) {
@@ -300,7 +586,13 @@ public class Oracle implements SQLDialect {
 		List<List<String>> values = new ArrayList<List<String>>();
 		List<String> current = null;
 		boolean isNamed = false;
-		while (counter < parsed.size()) {
+		// a single parameter that contains all the rows
+		String batchParameter = null;
+		if (validate(parsed, counter, ":") && counter + 1 < parsed.size() && !validate(parsed, counter + 1, "(")) {
+			batchParameter = parsed.get(counter + 1).getToken().getContent();
+			counter += 2;
+		}
+		while (batchParameter == null && counter < parsed.size()) {
 			// we start a new value sequence
 			if (validate(parsed, counter, "(")) {
 				if (current != null) {
@@ -393,23 +685,49 @@ public class Oracle implements SQLDialect {
 			.append(tableAlias)
 			.append("\n\tusing (");
 		
-		for (int i = 0; i < values.size(); i++) {
+		if (metric != null) {
+			metric[0] = OracleMetrics.MERGE_REWRITE + ":" + (batchParameter != null ? "batch" : OracleMetrics.getSizeClass(values.size()));
+		}
+		if (batchParameter != null) {
+			appendBatchSource(result, batchParameter, fields, input);
+		}
+		// when bucketing we pad the rows to a fixed amount by repeating the last row, once the parameters are bound all statements in the same bucket have the exact same text
+		// the padded rows are duplicates of the last row so we keep only the first row for each conflict key, the text of this filter does not depend on the amount of real rows
+		// note that this also means that if a batch contains the same key more than once, only one of those rows is merged
+		int rows = values.isEmpty() || !BUCKET_MERGES ? values.size() : getMergeBucket(values.size());
+		boolean padded = BUCKET_MERGES && !values.isEmpty();
+		if (padded) {
+			result.append("select * from (select padded.*, row_number() over (partition by ");
+			List<String> partition = conflicts.isEmpty() ? fields : conflicts;
+			for (int i = 0; i < partition.size(); i++) {
+				if (i > 0) {
+					result.append(", ");
+				}
+				result.append("padded.").append(partition.get(i));
+			}
+			result.append(" order by null) as padded_row from (");
+		}
+		for (int i = 0; i < rows; i++) {
+			List<String> row = values.get(Math.min(i, values.size() - 1));
 			if (i == 0) {
 				result.append("select ");
 			}
 			else {
 				result.append(" union all select ");
 			}
-			for (int j = 0; j < values.get(i).size(); j++) {
+			for (int j = 0; j < row.size(); j++) {
 				if (j > 0) {
 					result.append(", ");
 				}
-				result.append(values.get(i).get(j))
+				result.append(row.get(j))
 					.append(" as ")
 					.append(fields.get(j));
 			}
 			result.append(" from dual");
 		}
+		if (padded) {
+			result.append(") padded) where padded_row = 1");
+		}
 		
 		result.append(") excluded\n\ton (");
 		for (int i = 0; i < conflicts.size(); i++) {
@@ -439,7 +757,127 @@ public class Oracle implements SQLDialect {
 			result.append("excluded.").append(fields.get(i));
 		}
 		result.append(")");
-		return result.toString();
+		String merge = result.toString();
+		registerMergeShape(merge);
+		return merge;
+	}
+	
+	// powers of two up to 1024, after that multiples of 1024
+	static int getMergeBucket(int rows) {
+		if (rows >= 1024) {
+			return ((rows + 1023) / 1024) * 1024;
+		}
+		return rows <= 1 ? 1 : Integer.highestOneBit(rows - 1) << 1;
+	}
+	
+	// the named parameters are replaced with "?" before the statement is prepared so we count the text as the database sees it
+	private static void registerMergeShape(String merge) {
+		if (mergeShapes.size() < MAX_MERGE_SHAPES) {
+			mergeShapes.add(NAMED_PARAMETER.matcher(merge).replaceAll("?"));
+		}
+	}
+	
+	/**
+	 * The amount of distinct merge statement texts we have generated, this is the amount of cursors the merges need.
+	 */
+	public static int getMergeShapes() {
+		return mergeShapes.size();
+	}
+	
+	private static void appendBatchSource(StringBuilder result, String batchParameter, List<String> fields, ComplexType input) {
+		Map<String, Element<?>> typed = new HashMap<String, Element<?>>();
+		Element<?> batchElement = input == null ? null : input.get(batchParameter);
+		if (batchElement != null && batchElement.getType() instanceof ComplexType) {
+			for (Element<?> child : JDBCUtils.getFieldsInTable((ComplexType) batchElement.getType())) {
+				typed.put(EAIRepositoryUtils.uncamelify(child.getName()), child);
+			}
+		}
+		result.append("select * from json_table(:").append(batchParameter).append(", '$[*]' columns (");
+		for (int i = 0; i < fields.size(); i++) {
+			if (i > 0) {
+				result.append(", ");
+			}
+			String sqlType = null;
+			Element<?> child = typed.get(fields.get(i));
+			if (child != null && child.getType() instanceof SimpleType) {
+				sqlType = getPredefinedSQLType(((SimpleType<?>) child.getType()).getInstanceClass(), ValueUtils.getValue(MaxLengthProperty.getInstance(), child.getProperties()));
+			}
+			result.append(fields.get(i))
+				.append(" ")
+				.append(sqlType == null ? "varchar2(4000)" : sqlType)
+				.append(" path '$.\"")
+				.append(fields.get(i))
+				.append("\"'");
+		}
+		result.append(")))");
+	}
+	
+	/**
+	 * Builds the json payload for a batch upsert, every row is an object with a key per column (the uncamelified field name).
+	 * Booleans are written as 1/0 and dates as UTC timestamps, in line with buildInsertSQL().
+	 */
+	public static String buildBatchPayload(Collection<? extends ComplexContent> rows) {
+		StringBuilder builder = new StringBuilder("[");
+		for (ComplexContent row : rows) {
+			if (builder.length() > 1) {
+				builder.append(",");
+			}
+			builder.append("{");
+			boolean first = true;
+			for (Element<?> element : JDBCUtils.getFieldsInTable(row.getType())) {
+				if (!(element.getType() instanceof SimpleType)) {
+					continue;
+				}
+				Object value = row.get(element.getName());
+				if (value == null) {
+					continue;
+				}
+				if (first) {
+					first = false;
+				}
+				else {
+					builder.append(",");
+				}
+				appendJsonString(builder, EAIRepositoryUtils.uncamelify(element.getName()));
+				builder.append(":");
+				if (value instanceof Boolean) {
+					builder.append((Boolean) value ? "1" : "0");
+				}
+				else if (value instanceof Number) {
+					builder.append(value);
+				}
+				else if (value instanceof Date) {
+					appendJsonString(builder, JSON_TIMESTAMP.format(((Date) value).toInstant()));
+				}
+				else {
+					appendJsonString(builder, value.toString());
+				}
+			}
+			builder.append("}");
+		}
+		return builder.append("]").toString();
+	}
+	
+	private static void appendJsonString(StringBuilder builder, String value) {
+		builder.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char character = value.charAt(i);
+			switch (character) {
+				case '"': builder.append("\\\""); break;
+				case '\\': builder.append("\\\\"); break;
+				case '\n': builder.append("\\n"); break;
+				case '\r': builder.append("\\r"); break;
+				case '\t': builder.append("\\t"); break;
+				default:
+					if (character < 0x20) {
+						builder.append(String.format("\\u%04x", (int) character));
+					}
+					else {
+						builder.append(character);
+					}
+			}
+		}
+		builder.append('"');
 	}
 	
 	private static boolean validate(List<QueryPart> tokens, int offset, String value) {
@@ -448,18 +886,152 @@ public class Oracle implements SQLDialect {
 	
 	@Override
 	public String limit(String sql, Long offset, Integer limit) {
+		return limit(sql, offset, limit, supportsRowLimiting());
+	}
+	
+	String limit(String sql, Long offset, Integer limit, boolean rowLimiting) {
 		if (limit != null) {
 			if (offset == null) {
 				offset = 0l;
 			}
-			sql = "select results.*, rownum as record_number from (" + sql + ") results where rownum <= " + (offset + limit);
-			if (offset > 0) {
-				sql = "select results.* from (" + sql + ") results where record_number >= " + offset;
+			// since 12c we have proper row limiting, this also means we don't inject a record number
+			if (rowLimiting) {
+				metrics.increment(OracleMetrics.PAGINATION_ROW_LIMITING);
+				sql = "select results.* from (" + sql + "\n) results" + (offset > 0 ? " offset " + offset + " rows" : "") + " fetch next " + limit + " rows only";
+			}
+			// the rownum filter is a stopkey so oracle only fetches what it needs, the hint makes sure it optimizes for that
+			// we project the original columns so the record number does not end up in the result, if we can not determine them (e.g. "select *") it is still there
+			else if (offset > 0) {
+				metrics.increment(OracleMetrics.PAGINATION_ROWNUM);
+				sql = "select " + getProjection(sql) + " from (select /*+ FIRST_ROWS(" + (offset + limit) + ") */ results.*, rownum as record_number from (" + sql + "\n) results where rownum <= " + (offset + limit) + ") results where record_number > " + offset;
+			}
+			else {
+				metrics.increment(OracleMetrics.PAGINATION_ROWNUM);
+				sql = "select /*+ FIRST_ROWS(" + limit + ") */ results.* from (" + sql + "\n) results where rownum <= " + limit;
 			}
 		}
 		return sql;
 	}
 	
+	private static String getProjection(String sql) {
+		List<String> columns = OracleStatementScanner.getSelectedColumns(sql);
+		if (columns == null) {
+			return "results.*";
+		}
+		StringBuilder builder = new StringBuilder();
+		for (String column : columns) {
+			if (builder.length() > 0) {
+				builder.append(", ");
+			}
+			builder.append("results.").append(column);
+		}
+		return builder.toString();
+	}
+	
+	/**
+	 * Keyset pagination: instead of skipping an offset, we continue after the last key of the previous page which allows oracle to seek directly in an index.
+	 * The keys are the fields that uniquely order the result, optionally suffixed with " desc", for example: "created desc", "id".
+	 * When continuing from a previous page, the last seen values are bound as named parameters prefixed with "last", in this example ":lastCreated" and ":lastId".
+	 * 
+	 * Oracle does not support row value comparisons like (a, b) > (:a, :b) so we expand them to a > :a or (a = :a and b > :b).
+	 */
+	public String limit(String sql, List<String> keys, boolean continued, Integer limit) {
+		if (keys == null || keys.isEmpty()) {
+			return limit(sql, null, limit);
+		}
+		metrics.increment(OracleMetrics.PAGINATION_KEYSET);
+		List<String> columns = new ArrayList<String>();
+		List<String> parameters = new ArrayList<String>();
+		List<Boolean> descending = new ArrayList<Boolean>();
+		StringBuilder orderBy = new StringBuilder();
+		for (String key : keys) {
+			String [] parts = key.trim().split("[\\s]+");
+			boolean desc = parts.length > 1 && parts[1].equalsIgnoreCase("desc");
+			String column = "results." + restrict(EAIRepositoryUtils.uncamelify(parts[0]));
+			columns.add(column);
+			parameters.add(":last" + parts[0].substring(0, 1).toUpperCase() + parts[0].substring(1));
+			descending.add(desc);
+			if (orderBy.length() > 0) {
+				orderBy.append(", ");
+			}
+			orderBy.append(column).append(desc ? " desc" : " asc");
+		}
+		StringBuilder where = new StringBuilder();
+		if (continued) {
+			for (int i = 0; i < columns.size(); i++) {
+				if (i > 0) {
+					where.append(" or ");
+				}
+				where.append("(");
+				for (int j = 0; j < i; j++) {
+					where.append(columns.get(j)).append(" = ").append(parameters.get(j)).append(" and ");
+				}
+				where.append(columns.get(i)).append(descending.get(i) ? " < " : " > ").append(parameters.get(i)).append(")");
+			}
+		}
+		String result = "select results.* from (" + sql + "\n) results" + (continued ? " where " + where : "") + " order by " + orderBy;
+		if (limit != null) {
+			if (supportsRowLimiting()) {
+				result += " fetch next " + limit + " rows only";
+			}
+			else {
+				result = "select /*+ FIRST_ROWS(" + limit + ") */ results.* from (" + result + ") results where rownum <= " + limit;
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Whether the server supports "offset ... fetch next ..." (12c and up), as long as we have not seen a connection we assume it doesn't.
+	 * The version is detected when a statement is bound or a result set is read, a query without parameters that runs first is still paged with rownum.
+	 * You can force the version with -Doracle.version, which is recommended.
+	 */
+	public boolean supportsRowLimiting() {
+		Integer version = getServerVersion();
+		if (version == null && !versionWarned) {
+			versionWarned = true;
+			Logger.getLogger(Oracle.class.getName()).info("The oracle server version is not known yet, paging with rownum until it is detected, set -Doracle.version to avoid this");
+		}
+		return version != null && version >= 12;
+	}
+	
+	/**
+	 * Whether generated fields are created as identity columns, this has to be enabled with -Doracle.identityColumns=true and the server has to be 12c or up.
+	 * If we have not seen a connection yet we trust the setting.
+	 */
+	public boolean supportsIdentityColumns() {
+		Integer version = getServerVersion();
+		return IDENTITY_COLUMNS && (version == null || version >= 12);
+	}
+	
+	// identity columns are always numeric
+	private static boolean isNumeric(Element<?> element) {
+		return element.getType() instanceof SimpleType && Number.class.isAssignableFrom(((SimpleType<?>) element.getType()).getInstanceClass());
+	}
+	
+	/**
+	 * The name of the sequence that buildCreateSQL() generates for a generated field.
+	 */
+	public static String getSequenceName(ComplexType type, String element) {
+		return "seq_" + EAIRepositoryUtils.uncamelify(getName(type.getProperties())) + "_" + EAIRepositoryUtils.uncamelify(element);
+	}
+	
+	/**
+	 * Gets a shared allocator that reserves blocks of -Doracle.sequenceBlockSize values (default 100) so ids can be generated client side before inserting.
+	 */
+	public OracleSequenceAllocator getSequenceAllocator(String sequenceName) {
+		OracleSequenceAllocator allocator = sequenceAllocators.get(sequenceName);
+		if (allocator == null) {
+			sequenceAllocators.putIfAbsent(sequenceName, new OracleSequenceAllocator(sequenceName, SEQUENCE_BLOCK_SIZE));
+			allocator = sequenceAllocators.get(sequenceName);
+		}
+		return allocator;
+	}
+	
+	public Integer getServerVersion() {
+		return SERVER_VERSION == null ? serverVersion : SERVER_VERSION;
+	}
+	
 	public static String getName(Value<?>...properties) {
 		String value = ValueUtils.getValue(CollectionNameProperty.getInstance(), properties);
 		if (value == null) {
@@ -468,32 +1040,65 @@ public class Oracle implements SQLDialect {
 		return value;
 	}
 
-	private static String restrict(String columnName) {
+	static String restrict(String columnName) {
 		if (TRUNCATE_FIELDS && columnName.length() > 30) {
 			columnName = columnName.substring(0, 30);
 		}
-		if (reserved.indexOf(columnName) >= 0) {
+		if (OracleReservedWords.getInstance().isReserved(columnName)) {
 			columnName = "\"" + columnName + "\"";
 		}
 		return columnName;
 	}
 	
+	/**
+	 * Restricts a word that appears in the free text of a statement, returns null if the word does not need to change.
+	 * Only lower case reserved words are quoted, this matches how the columns are created (see restrict()).
+	 */
+	static String restrict(String sql, int start, int end) {
+		if (TRUNCATE_FIELDS && end - start > 30) {
+			String truncated = sql.substring(start, start + 30);
+			return OracleReservedWords.getInstance().isQuotable(truncated, 0, 30) ? "\"" + truncated + "\"" : truncated;
+		}
+		else if (OracleReservedWords.getInstance().isQuotable(sql, start, end)) {
+			return "\"" + sql.substring(start, end) + "\"";
+		}
+		return null;
+	}
+	
 	// has to be "drop column", not just "drop"!
 	@Override
 	public String buildDropSQL(ComplexType type, String element) {
 		String name = getName(type.getProperties()).replaceAll("([A-Z]+)", "_$1").replaceFirst("^_", "");
 		name = quoteReserved(name.toLowerCase());
+		// setting a column unused is a dictionary change, the actual data is removed later with buildDropUnusedSQL()
+		if (ONLINE_SCHEMA_CHANGES) {
+			return "alter table " + name + " set unused (" + element.replaceAll("([A-Z]+)", "_$1").replaceFirst("^_", "") + ");";
+		}
 		return "alter table " + name + " drop column " + element.replaceAll("([A-Z]+)", "_$1").replaceFirst("^_", "") + ";";
 	}
 	
+	/**
+	 * Physically removes the columns that were set unused, this can be scheduled outside of peak hours.
+	 * The checkpoint (in rows) limits the undo that is generated and allows the statement to be resumed with "drop columns continue" if it is interrupted.
+	 */
+	public String buildDropUnusedSQL(ComplexType type, int checkpoint) {
+		String name = getName(type.getProperties()).replaceAll("([A-Z]+)", "_$1").replaceFirst("^_", "");
+		name = quoteReserved(name.toLowerCase());
+		return "alter table " + name + " drop unused columns checkpoint " + checkpoint + ";";
+	}
+	
 	@Override
 	public String buildCreateSQL(ComplexType type, boolean compact) {
 		StringBuilder builder = new StringBuilder();
+		boolean identity = supportsIdentityColumns();
 		for (Element<?> child : JDBCUtils.getFieldsInTable(type)) {
 			Value<Boolean> generatedProperty = child.getProperty(GeneratedProperty.getInstance());
-			if (generatedProperty != null && generatedProperty.getValue() != null && generatedProperty.getValue()) {
-				String seqName = "seq_" + EAIRepositoryUtils.uncamelify(getName(type.getProperties())) + "_" + EAIRepositoryUtils.uncamelify(child.getName()); 
-				builder.append("create sequence ").append(seqName).append(";\n");
+			if (generatedProperty != null && generatedProperty.getValue() != null && generatedProperty.getValue() && !(identity && isNumeric(child))) {
+				builder.append("create sequence ").append(getSequenceName(type, child.getName()));
+				if (SEQUENCE_CACHE != null) {
+					builder.append(" cache ").append(SEQUENCE_CACHE);
+				}
+				builder.append(";\n");
 			}
 		}
 		String tableName = EAIRepositoryUtils.uncamelify(getName(type.getProperties()));
@@ -546,11 +1151,22 @@ public class Oracle implements SQLDialect {
 			
 			Value<Boolean> generatedProperty = child.getProperty(GeneratedProperty.getInstance());
 			if (generatedProperty != null && generatedProperty.getValue() != null && generatedProperty.getValue()) {
-				String seqName = "seq_" + EAIRepositoryUtils.uncamelify(getName(type.getProperties())) + "_" + EAIRepositoryUtils.uncamelify(child.getName());
-				builder.append(" default " + seqName + ".nextval");
+				if (identity && isNumeric(child)) {
+					builder.append(" generated by default as identity");
+					if (SEQUENCE_CACHE != null) {
+						builder.append(" (cache " + SEQUENCE_CACHE + ")");
+					}
+				}
+				else {
+					builder.append(" default " + getSequenceName(type, child.getName()) + ".nextval");
+				}
 			}
 			if (child.getName().equals("id")) {
 				builder.append(" primary key");
+				// index organized tables can not have a reverse key primary key
+				if (isReverseKey(child) && !isIndexOrganized(type)) {
+					builder.append(" using index reverse");
+				}
 			}
 			else {
 				Integer value = ValueUtils.getValue(MinOccursProperty.getInstance(), child.getProperties());
@@ -576,8 +1192,11 @@ public class Oracle implements SQLDialect {
 		if (!constraints.toString().isEmpty()) {
 			builder.append("," + (compact ? " " : "\n")).append(constraints.toString());
 		}
-		builder.append((compact ? "" : "\n") + ");");
-		// create indexes
+		builder.append((compact ? "" : "\n") + ")");
+		builder.append(buildStorageClauses(type, compact));
+		builder.append(";");
+		// create indexes, on a partitioned table they are partitioned along with the table
+		String indexSuffix = getPartitionColumn(type) == null ? "" : " local";
 		builder.append("\n");
 		for (Element<?> child : JDBCUtils.getFieldsInTable(type)) {
 			Value<Boolean> indexedProperty = child.getProperty(IndexedProperty.getInstance());
@@ -585,13 +1204,163 @@ public class Oracle implements SQLDialect {
 				String tableName2 = EAIRepositoryUtils.uncamelify(getName(type.getProperties()));
 				String columnName = EAIRepositoryUtils.uncamelify(child.getName());
 				String seqName = "idx_" + tableName2 + "_" + columnName;
-				String sql = "create index " + seqName + " on " + tableName2 + "(" + columnName + ");\n";
+				String sql = "create index " + seqName + " on " + tableName2 + "(" + columnName + ")" + (isReverseKey(child) ? " reverse" : "") + indexSuffix + getIndexBuildOptions() + ";\n";
 				builder.append(rewriteReserved(sql));
+				builder.append(getIndexResetSQL(seqName));
+			}
+		}
+		String compositeIndexes = ValueUtils.getValue(CompositeIndexProperty.getInstance(), type.getProperties());
+		if (compositeIndexes != null) {
+			for (String index : compositeIndexes.split("\\s*;\\s*")) {
+				if (index.trim().isEmpty()) {
+					continue;
+				}
+				StringBuilder columns = new StringBuilder();
+				StringBuilder indexName = new StringBuilder("idx_" + tableName);
+				for (String field : index.trim().split("\\s*,\\s*")) {
+					if (type.get(field) == null) {
+						throw new IllegalArgumentException("The composite index '" + index + "' refers to an unknown field: " + field);
+					}
+					if (columns.length() > 0) {
+						columns.append(", ");
+					}
+					columns.append(restrict(EAIRepositoryUtils.uncamelify(field)));
+					indexName.append("_").append(EAIRepositoryUtils.uncamelify(field));
+				}
+				builder.append("create index " + indexName + " on " + tableName + "(" + columns + ")" + indexSuffix + getIndexBuildOptions() + ";\n");
+				builder.append(getIndexResetSQL(indexName.toString()));
+			}
+		}
+		if (isEnabled(LogErrorsProperty.getInstance(), type)) {
+			builder.append(buildErrorLogSQL(type, compact));
+		}
+		return builder.toString();
+	}
+	
+	/**
+	 * Builds the error log table for the bulk insert mode, this is equivalent to DBMS_ERRLOG.CREATE_ERROR_LOG but can be added to a migration script.
+	 * All columns are varchar2(4000) so we can log values that failed to convert, lob columns are skipped like DBMS_ERRLOG does.
+	 */
+	public String buildErrorLogSQL(ComplexType type, boolean compact) {
+		String tableName = EAIRepositoryUtils.uncamelify(getName(type.getProperties()));
+		String separator = compact ? ", " : ",\n\t";
+		StringBuilder builder = new StringBuilder();
+		builder.append("create table ").append(getErrorLogTableName(tableName)).append(" (").append(compact ? "" : "\n\t")
+			.append("ora_err_number$ number").append(separator)
+			.append("ora_err_mesg$ varchar2(2000)").append(separator)
+			.append("ora_err_rowid$ urowid(4000)").append(separator)
+			.append("ora_err_optyp$ varchar2(2)").append(separator)
+			.append("ora_err_tag$ varchar2(2000)");
+		for (Element<?> child : JDBCUtils.getFieldsInTable(type)) {
+			if (child.getType() instanceof ComplexType) {
+				builder.append(separator).append(EAIRepositoryUtils.uncamelify(child.getName())).append("_id varchar2(4000)");
+			}
+			else if (!"clob".equals(getPredefinedSQLType(child))) {
+				builder.append(separator).append(restrict(EAIRepositoryUtils.uncamelify(child.getName()))).append(" varchar2(4000)");
+			}
+		}
+		builder.append(compact ? "" : "\n").append(");\n");
+		return builder.toString();
+	}
+	
+	/**
+	 * The physical clauses of a create table: index organization, compression and partitioning, driven by properties on the type.
+	 */
+	private String buildStorageClauses(ComplexType type, boolean compact) {
+		String separator = compact ? " " : "\n";
+		StringBuilder builder = new StringBuilder();
+		boolean indexOrganized = isIndexOrganized(type);
+		if (indexOrganized) {
+			builder.append(separator).append("organization index");
+		}
+		String compression = ValueUtils.getValue(CompressionProperty.getInstance(), type.getProperties());
+		// key compression of index organized tables works differently, we don't support it (yet)
+		if (compression != null && !compression.trim().isEmpty() && !indexOrganized) {
+			String normalized = compression.trim().toLowerCase().replaceAll("\\s+", " ");
+			if (normalized.equals("basic") || normalized.equals("advanced")) {
+				builder.append(separator).append("row store compress ").append(normalized);
+			}
+			else if (normalized.equals("query low") || normalized.equals("query high") || normalized.equals("archive low") || normalized.equals("archive high")) {
+				builder.append(separator).append("column store compress for ").append(normalized);
+			}
+			else {
+				throw new IllegalArgumentException("Unsupported compression: " + compression);
+			}
+		}
+		String partitionColumn = getPartitionColumn(type);
+		if (partitionColumn != null) {
+			Element<?> element = type.get(partitionColumn);
+			if (element == null || !(element.getType() instanceof SimpleType)) {
+				throw new IllegalArgumentException("The partition column is not a field of the table: " + partitionColumn);
+			}
+			Class<?> instanceClass = ((SimpleType<?>) element.getType()).getInstanceClass();
+			builder.append(separator).append("partition by range (").append(restrict(EAIRepositoryUtils.uncamelify(partitionColumn))).append(")");
+			String interval = ValueUtils.getValue(PartitionIntervalProperty.getInstance(), type.getProperties());
+			if (interval != null && !interval.trim().isEmpty()) {
+				if (Date.class.isAssignableFrom(instanceClass)) {
+					builder.append(" interval (").append(getDateInterval(interval.trim())).append(")")
+						.append(separator).append("(partition p_initial values less than (timestamp '2000-01-01 00:00:00'))");
+				}
+				else if (Number.class.isAssignableFrom(instanceClass) && interval.trim().matches("[0-9]+")) {
+					builder.append(" interval (").append(interval.trim()).append(")")
+						.append(separator).append("(partition p_initial values less than (").append(interval.trim()).append("))");
+				}
+				else {
+					throw new IllegalArgumentException("Invalid partition interval '" + interval + "' for field: " + partitionColumn);
+				}
+			}
+			// without an interval you need to manage the partitions yourself, we start with a single catch-all partition
+			else {
+				builder.append(separator).append("(partition p_max values less than (maxvalue))");
 			}
 		}
 		return builder.toString();
 	}
 	
+	private static String getIndexBuildOptions() {
+		if (!ONLINE_SCHEMA_CHANGES) {
+			return "";
+		}
+		return " online" + (INDEX_PARALLELISM != null && INDEX_PARALLELISM > 1 ? " parallel " + INDEX_PARALLELISM : "");
+	}
+	
+	// an index that is built in parallel keeps its degree, which makes the optimizer favor parallel plans on it
+	private static String getIndexResetSQL(String indexName) {
+		return ONLINE_SCHEMA_CHANGES && INDEX_PARALLELISM != null && INDEX_PARALLELISM > 1 ? "alter index " + indexName + " noparallel;\n" : "";
+	}
+	
+	private static String getDateInterval(String interval) {
+		String [] parts = interval.split("\\s+");
+		int amount = parts.length == 2 ? Integer.parseInt(parts[0]) : 1;
+		String unit = parts[parts.length - 1].toLowerCase().replaceFirst("s$", "");
+		if (unit.equals("year") || unit.equals("month")) {
+			return "numtoyminterval(" + amount + ", '" + unit.toUpperCase() + "')";
+		}
+		else if (unit.equals("week")) {
+			return "numtodsinterval(" + (amount * 7) + ", 'DAY')";
+		}
+		else if (unit.equals("day") || unit.equals("hour")) {
+			return "numtodsinterval(" + amount + ", '" + unit.toUpperCase() + "')";
+		}
+		throw new IllegalArgumentException("Unsupported partition interval: " + interval);
+	}
+	
+	private static String getPartitionColumn(ComplexType type) {
+		String column = ValueUtils.getValue(PartitionColumnProperty.getInstance(), type.getProperties());
+		return column == null || column.trim().isEmpty() ? null : column.trim();
+	}
+	
+	// an index organized table needs a primary key
+	private static boolean isIndexOrganized(ComplexType type) {
+		Boolean indexOrganized = ValueUtils.getValue(IndexOrganizedProperty.getInstance(), type.getProperties());
+		return indexOrganized != null && indexOrganized && type.get("id") != null;
+	}
+	
+	private static boolean isReverseKey(Element<?> element) {
+		Value<Boolean> property = element.getProperty(ReverseKeyProperty.getInstance());
+		return property != null && property.getValue() != null && property.getValue();
+	}
+	
 	private String getPredefinedSQLType(Element<?> element) {
 		Class<?> instanceClass = ((SimpleType<?>) element.getType()).getInstanceClass();
 		if (String.class.equals(instanceClass) || char[].class.equals(instanceClass)) {
@@ -657,83 +1426,146 @@ public class Oracle implements SQLDialect {
 	public String buildInsertSQL(ComplexContent content, boolean compact) {
 		StringBuilder keyBuilder = new StringBuilder();
 		StringBuilder valueBuilder = new StringBuilder();
-		SimpleDateFormat timestampFormatter = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
-		SimpleDateFormat dateFormatter = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-		timestampFormatter.setTimeZone(TimeZone.getTimeZone("UTC"));
-		dateFormatter.setTimeZone(TimeZone.getTimeZone("UTC"));
 		Date date = new Date();
 		for (Element<?> element : JDBCUtils.getFieldsInTable(content.getType())) {
 			if (element.getType() instanceof SimpleType) {
-				Class<?> instanceClass = ((SimpleType<?>) element.getType()).getInstanceClass();
 				if (!keyBuilder.toString().isEmpty()) {
 					keyBuilder.append("," + (compact ? " " : "\n\t"));
 					valueBuilder.append("," + (compact ? " " : "\n\t"));
 				}
 				keyBuilder.append(restrict(EAIRepositoryUtils.uncamelify(element.getName())));
-				Object value = content.get(element.getName());
-				Integer minOccurs = ValueUtils.getValue(MinOccursProperty.getInstance(), element.getProperties());
-				// if there is no value but it is mandatory, try to generate one
-				if (value == null && minOccurs != null && minOccurs > 0) {
-					if (UUID.class.isAssignableFrom(instanceClass)) {
-						value = UUID.randomUUID();
-					}
-					else if (Date.class.isAssignableFrom(instanceClass)) {
-						value = date;
-					}
-					else if (Number.class.isAssignableFrom(instanceClass)) {
-						value = 0;
-					}
-					else if (Boolean.class.isAssignableFrom(instanceClass)) {
-						value = false;
+				Value<Integer> maxLength = element.getProperty(MaxLengthProperty.getInstance());
+				// clobs can take the full value
+				appendLiteral(valueBuilder, element, getInsertValue(content, element, date), maxLength != null && maxLength.getValue() != null && maxLength.getValue() > 4000);
+			}
+		}
+		return "insert into " + EAIRepositoryUtils.uncamelify(getName(content.getType().getProperties())) + " (" + (compact ? "" : "\n\t") + keyBuilder.toString() + ")" + (compact ? "" : "\n") + " values (" + (compact ? "" : "\n\t") + valueBuilder.toString() + (compact ? "" : "\n") + ");";
+	}
+	
+	/**
+	 * Gets the value of the element, if there is no value but it is mandatory, we try to generate one.
+	 */
+	static Object getInsertValue(ComplexContent content, Element<?> element, Date now) {
+		Class<?> instanceClass = ((SimpleType<?>) element.getType()).getInstanceClass();
+		Object value = content.get(element.getName());
+		Integer minOccurs = ValueUtils.getValue(MinOccursProperty.getInstance(), element.getProperties());
+		if (value == null && minOccurs != null && minOccurs > 0) {
+			if (UUID.class.isAssignableFrom(instanceClass)) {
+				value = UUID.randomUUID();
+			}
+			else if (Date.class.isAssignableFrom(instanceClass)) {
+				value = now;
+			}
+			else if (Number.class.isAssignableFrom(instanceClass)) {
+				value = 0;
+			}
+			else if (Boolean.class.isAssignableFrom(instanceClass)) {
+				value = false;
+			}
+		}
+		return value;
+	}
+	
+	/**
+	 * Appends the value as an sql literal.
+	 * If we can't keep long strings, they are limited to 4000 bytes because oracle does not allow longer literals, you have to use parameterized queries for that.
+	 * If we can keep them, long strings are split into chunks that are concatenated with to_clob().
+	 */
+	static void appendLiteral(StringBuilder builder, Element<?> element, Object value, boolean keepLongStrings) {
+		Class<?> instanceClass = ((SimpleType<?>) element.getType()).getInstanceClass();
+		if (value == null) {
+			builder.append("null");
+		}
+		else if (Boolean.class.isAssignableFrom(instanceClass)) {
+			builder.append((Boolean) value ? "1" : "0");
+		}
+		else if (Date.class.isAssignableFrom(instanceClass)) {
+			Value<String> property = element.getProperty(FormatProperty.getInstance());
+			if (property != null && !property.getValue().equals("timestamp") && !property.getValue().contains("S") && !property.getValue().equals("time")) {
+				builder.append("to_timestamp('").append(TIMESTAMP_FORMATTER.format(((Date) value).toInstant())).append("', 'yyyy-mm-dd hh24:mi:ss.ff3')");
+			}
+			else {
+				builder.append("to_date('").append(DATE_FORMATTER.format(((Date) value).toInstant())).append("', 'yyyy-mm-dd hh24:mi:ss')");
+			}
+		}
+		else if (URI.class.isAssignableFrom(instanceClass) || String.class.isAssignableFrom(instanceClass) || UUID.class.isAssignableFrom(instanceClass)) {
+			String string = value.toString();
+			int length = string.length();
+			if (keepLongStrings && length > CLOB_CHUNK_SIZE) {
+				for (int i = 0; i < length; i += CLOB_CHUNK_SIZE) {
+					if (i > 0) {
+						builder.append(" || ");
 					}
+					builder.append("to_clob('").append(string.substring(i, Math.min(length, i + CLOB_CHUNK_SIZE)).replace("'", "''")).append("')");
 				}
-				if (value == null) {
-					valueBuilder.append("null");
-				}
-				else {
-					boolean closeQuote = false;
-					if (Boolean.class.isAssignableFrom(instanceClass)) {
-						if ((Boolean) value) {
-							valueBuilder.append("1");
-						}
-						else {
-							valueBuilder.append("0");
-						}
-					}
-					else if (Date.class.isAssignableFrom(instanceClass)) {
-						Value<String> property = element.getProperty(FormatProperty.getInstance());
-						if (property != null && !property.getValue().equals("timestamp") && !property.getValue().contains("S") && !property.getValue().equals("time")) {
-							valueBuilder.append("to_timestamp('").append(timestampFormatter.format(value)).append("', 'yyyy-mm-dd hh24:mi:ss.ff3')");
-						}
-						else {
-							valueBuilder.append("to_date('").append(dateFormatter.format(value)).append("', 'yyyy-mm-dd hh24:mi:ss')");
-						}
-					}
-					else {
-						if (URI.class.isAssignableFrom(instanceClass) || String.class.isAssignableFrom(instanceClass) || UUID.class.isAssignableFrom(instanceClass)) {
-							valueBuilder.append("'");
-							closeQuote = true;
-							// we _have_ to limit the value to 4000 characters, oracle does not allow inserting longer sequences, you have to use parameterized queries for that
-							// as a little twist, we assume it mostly is about stack traces so we keep the end instead of the beginning
-							value = value.toString().replace("'", "''");
-							int length = value.toString().length();
-							if (length >= 4000) {
-								value = value.toString().substring(Math.max(0, length - 4000), length);
-							}
-						}
-						valueBuilder.append(value.toString());
-						if (closeQuote) {
-							valueBuilder.append("'");
-						}
-					}
+			}
+			else {
+				// as a little twist, we assume it mostly is about stack traces so we keep the end instead of the beginning
+				// even with doubled quotes a character takes at most 3 bytes, so short strings never need truncating
+				if (!keepLongStrings && length * 3 > MAX_LITERAL_BYTES) {
+					string = getLiteralTail(string, MAX_LITERAL_BYTES);
 				}
+				builder.append("'").append(string.replace("'", "''")).append("'");
 			}
 		}
-		return "insert into " + EAIRepositoryUtils.uncamelify(getName(content.getType().getProperties())) + " (" + (compact ? "" : "\n\t") + keyBuilder.toString() + ")" + (compact ? "" : "\n") + " values (" + (compact ? "" : "\n\t") + valueBuilder.toString() + (compact ? "" : "\n") + ");";
+		else {
+			builder.append(value.toString());
+		}
+	}
+
+	/**
+	 * The longest end of the string that fits in a literal of the given amount of bytes once the quotes are doubled and it is encoded in UTF-8.
+	 * A quote counts as two bytes so we never cut an escaped quote in half, nor do we cut a surrogate pair.
+	 */
+	static String getLiteralTail(String string, int maxBytes) {
+		int bytes = 0;
+		int start = string.length();
+		while (start > 0) {
+			int codePoint = string.codePointBefore(start);
+			int size;
+			if (codePoint == '\'') {
+				size = 2;
+			}
+			else if (codePoint < 0x80) {
+				size = 1;
+			}
+			else if (codePoint < 0x800) {
+				size = 2;
+			}
+			else if (codePoint < 0x10000) {
+				size = 3;
+			}
+			else {
+				size = 4;
+			}
+			if (bytes + size > maxBytes) {
+				break;
+			}
+			bytes += size;
+			start -= Character.charCount(codePoint);
+		}
+		return start == 0 ? string : string.substring(start);
 	}
 
 	@Override
 	public void setObject(PreparedStatement statement, Element<?> element, int index, Object value, String sql) throws SQLException, ServiceException {
+		initialize(statement.getConnection());
+		// we only need to see each statement once to configure the statement cache of its connection, the statement itself is recorded in rewrite()
+		// this is also the moment to free the temporary lobs of the previous statements on this connection, this thread is the one using it
+		if (index == 1) {
+			statementCacheTracker.configure(getOracleConnection(statement.getConnection()));
+			lobTracker.release(statement);
+		}
+		// a list of rows for a batch upsert ("values :rows"), these are bound as a single json document, see rewriteMerge()
+		if (element.getType() instanceof ComplexType) {
+			if (value == null) {
+				statement.setNull(index, Types.CLOB);
+			}
+			else {
+				setClob(statement, index, buildBatchPayload(toRows(value)));
+			}
+			return;
+		}
 		SimpleType<?> type = (SimpleType<?>) element.getType();
 		boolean set = false;
 		// check for clobs
@@ -747,17 +1579,7 @@ public class Oracle implements SQLDialect {
 				}
 				else {
 					Converter converter = ConverterFactory.getInstance().getConverter();
-					Clob clob = statement.getConnection().createClob();
-					// TODO 0-based or 1-based?
-					Writer writer = clob.setCharacterStream(1);
-					try {
-						writer.write(value instanceof String ? (String) value : converter.convert(value, String.class));
-						writer.flush();
-					}
-					catch (IOException e) {
-						throw new ServiceException("ORACLE-1", "Can not write clob stream", e);
-					}
-					statement.setClob(index, clob);
+					setClob(statement, index, value instanceof String ? (String) value : converter.convert(value, String.class));
 				}
 			}
 		}
@@ -768,7 +1590,97 @@ public class Oracle implements SQLDialect {
 			SQLDialect.super.setObject(statement, element, index, value, sql);
 		}
 	}
+	
+	private void setClob(PreparedStatement statement, int index, String string) throws SQLException {
+		// short values can be bound as a regular string, oracle converts them to a clob
+		if (string.length() <= 4000) {
+			statement.setString(index, string);
+		}
+		// medium values are streamed to the server without the overhead of a temporary lob
+		else if (string.length() <= CLOB_STREAM_THRESHOLD) {
+			statement.setCharacterStream(index, new StringReader(string), string.length());
+		}
+		else {
+			Clob clob = lobTracker.createClob(statement);
+			metrics.increment(OracleMetrics.LOB_CREATED);
+			clob.setString(1, string);
+			statement.setClob(index, clob);
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static List<ComplexContent> toRows(Object value) {
+		List<ComplexContent> rows = new ArrayList<ComplexContent>();
+		Iterable<Object> iterable = value instanceof Iterable ? (Iterable<Object>) value
+			: value instanceof Object[] ? Arrays.asList((Object[]) value)
+			: Arrays.asList(value);
+		for (Object row : iterable) {
+			if (row != null) {
+				rows.add(row instanceof ComplexContent ? (ComplexContent) row : ComplexContentWrapperFactory.getInstance().getWrapper().wrap(row));
+			}
+		}
+		return rows;
+	}
 
+	/**
+	 * The extraction plan for the result set of a query, built on first use and reused for all subsequent executions of the same query with the same output type.
+	 */
+	public OracleResultSetPlan getResultSetPlan(String sql, ComplexType output, ResultSet resultSet) throws SQLException {
+		// parameterless queries never bind anything, this is the first time we see their connection
+		if (resultSet.getStatement() != null) {
+			Connection connection = resultSet.getStatement().getConnection();
+			initialize(connection);
+			statementCacheTracker.configure(getOracleConnection(connection));
+		}
+		Map.Entry<String, ComplexType> key = new AbstractMap.SimpleImmutableEntry<String, ComplexType>(sql, output);
+		OracleResultSetPlan plan = resultSetPlans.get(key);
+		if (plan == null) {
+			plan = OracleResultSetPlan.build(resultSet.getMetaData(), output);
+			if (resultSetPlans.size() >= MAX_RESULT_SET_PLANS) {
+				resultSetPlans.clear();
+			}
+			resultSetPlans.put(key, plan);
+		}
+		return plan;
+	}
+	
+	/**
+	 * Reads the remaining rows of the result set into instances of the output type using the extraction plan of the query.
+	 * This keeps all the rows in memory, for large result sets use getResultSetPlan() and process the rows one by one.
+	 */
+	public List<ComplexContent> extract(String sql, ComplexType output, ResultSet resultSet) throws SQLException {
+		OracleResultSetPlan plan = getResultSetPlan(sql, output, resultSet);
+		List<ComplexContent> rows = new ArrayList<ComplexContent>();
+		while (resultSet.next()) {
+			ComplexContent row = output.newInstance();
+			plan.extract(resultSet, row);
+			rows.add(row);
+		}
+		return rows;
+	}
+	
+	/**
+	 * Executes statements without blocking the calling thread, see OracleAsyncExecutor for when this is truly non-blocking.
+	 * This is not used by the jdbc services, it is meant for code that manages its own connections of an oracle pool, only one statement per connection can be in flight.
+	 */
+	public OracleAsyncExecutor getAsyncExecutor() {
+		return asyncExecutor;
+	}
+	
+	/**
+	 * The metrics of this dialect instance, they are also published to the metrics of the pool once we have seen a connection.
+	 */
+	public OracleMetrics getMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * The temporary lobs are freed once their statement is closed and the connection is used again, code that executes statements itself can free them right after the execution with getLobTracker().free(statement).
+	 */
+	public OracleLobTracker getLobTracker() {
+		return lobTracker;
+	}
+	
 	@Override
 	public Integer getSQLType(Element<?> element) {
 		SimpleType<?> type = (SimpleType<?>) element.getType();
@@ -783,7 +1695,43 @@ public class Oracle implements SQLDialect {
 
 	@Override
 	public List<String> getReservedWords() {
-		return reserved;
+		return OracleReservedWords.getInstance().asList();
+	}
+	
+	// called with the first connection we see
+	private void initialize(Connection connection) {
+		if (!initialized) {
+			initialized = true;
+			try {
+				serverVersion = connection.getMetaData().getDatabaseMajorVersion();
+			}
+			catch (SQLException e) {
+				// we keep the conservative defaults
+			}
+			if (LOAD_RESERVED_WORDS) {
+				OracleReservedWords.getInstance().load(connection);
+			}
+			publishMetrics();
+		}
+	}
+	
+	// the dialect is created by the pool, we look up which pool that is so we can publish to its metrics
+	private void publishMetrics() {
+		try {
+			EAIResourceRepository repository = EAIResourceRepository.getInstance();
+			if (repository != null && metrics.getMetricInstance() == null) {
+				for (JDBCPoolArtifact pool : repository.getArtifacts(JDBCPoolArtifact.class)) {
+					if (pool.getDialect() == this) {
+						metrics.setMetricInstance(repository.getMetricInstance(pool.getId()));
+						break;
+					}
+				}
+			}
+		}
+		catch (RuntimeException e) {
+			// without a repository (e.g. in the benchmarks) the metrics are only available through getMetrics()
+			Logger.getLogger(Oracle.class.getName()).log(Level.FINE, "Could not publish the oracle metrics to the pool", e);
+		}
 	}
 	
 }
@@ -0,0 +1,220 @@
+/*
+* Copyright (C) 2016 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.eai.module.jdbc.dialects;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Executes statements asynchronously.
+ * 
+ * The reactive extensions of the oracle driver (executeQueryAsyncOracle(),...) are only part of ojdbc11 because they are built on java.util.concurrent.Flow (java 9+).
+ * This module is built against ojdbc8 for java 8 so we can not link against them, instead we look them up at runtime:
+ * - if the driver and the jvm support them, the statement is executed without blocking a thread for the round trip
+ * - otherwise the statement is executed on a pool of -Doracle.asyncThreads (default 32) threads with a queue of -Doracle.asyncQueueSize (default 256) statements,
+ *   this frees the calling thread but still uses a thread per statement in flight. When the queue is full the returned future fails with a RejectedExecutionException.
+ * 
+ * A jdbc connection is not safe for concurrent use: only have one statement per connection in flight and do not close the statement or return the connection to the pool
+ * before the future has completed, the caller has to wait for the future (e.g. with join() or thenCompose()) before it releases them.
+ * The returned result set must be read by the caller, reading it can still block when the rows are not prefetched.
+ * 
+ * This is a library api, the jdbc services of the pool do not use it. Code that manages its own connections can get it from the dialect of an oracle pool with Oracle.getAsyncExecutor().
+ */
+public class OracleAsyncExecutor {
+
+	private static final Integer ASYNC_THREADS = Integer.parseInt(System.getProperty("oracle.asyncThreads", "32"));
+	private static final Integer ASYNC_QUEUE_SIZE = Integer.parseInt(System.getProperty("oracle.asyncQueueSize", "256"));
+
+	private static final Class<?> ORACLE_STATEMENT, SUBSCRIBER;
+	private static final Method EXECUTE_QUERY_ASYNC, EXECUTE_UPDATE_ASYNC, SUBSCRIBE, REQUEST;
+
+	static {
+		Class<?> statement = null, subscriber = null;
+		Method query = null, update = null, subscribe = null, request = null;
+		try {
+			Class<?> publisher = Class.forName("java.util.concurrent.Flow$Publisher");
+			subscriber = Class.forName("java.util.concurrent.Flow$Subscriber");
+			subscribe = publisher.getMethod("subscribe", subscriber);
+			request = Class.forName("java.util.concurrent.Flow$Subscription").getMethod("request", long.class);
+			statement = Class.forName("oracle.jdbc.OraclePreparedStatement");
+			query = statement.getMethod("executeQueryAsyncOracle");
+			update = statement.getMethod("executeUpdateAsyncOracle");
+		}
+		catch (ClassNotFoundException | NoSuchMethodException e) {
+			// no reactive support, we use the fallback
+			statement = null;
+		}
+		ORACLE_STATEMENT = statement;
+		SUBSCRIBER = subscriber;
+		EXECUTE_QUERY_ASYNC = query;
+		EXECUTE_UPDATE_ASYNC = update;
+		SUBSCRIBE = subscribe;
+		REQUEST = request;
+	}
+
+	private static volatile Executor defaultExecutor;
+
+	private final Executor executor;
+
+	public OracleAsyncExecutor() {
+		this(null);
+	}
+
+	/**
+	 * The executor is used for statements that can not be executed reactively, if it is null a shared bounded pool is used.
+	 * If you pass in your own executor, it should be bounded as well.
+	 */
+	public OracleAsyncExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Whether the driver on the classpath supports the reactive extensions.
+	 */
+	public static boolean isReactive() {
+		return ORACLE_STATEMENT != null;
+	}
+
+	public CompletableFuture<ResultSet> executeQuery(PreparedStatement statement) {
+		if (isReactive(statement)) {
+			return subscribe(statement, EXECUTE_QUERY_ASYNC);
+		}
+		return submit(() -> {
+			try {
+				return statement.executeQuery();
+			}
+			catch (SQLException e) {
+				throw new CompletionException(e);
+			}
+		});
+	}
+
+	public CompletableFuture<Long> executeUpdate(PreparedStatement statement) {
+		if (isReactive(statement)) {
+			return subscribe(statement, EXECUTE_UPDATE_ASYNC);
+		}
+		return submit(() -> {
+			try {
+				return (long) statement.executeUpdate();
+			}
+			catch (SQLException e) {
+				throw new CompletionException(e);
+			}
+		});
+	}
+	
+	// a rejected statement is reported through the future, like any other failure
+	private <T> CompletableFuture<T> submit(Supplier<T> supplier) {
+		try {
+			return CompletableFuture.supplyAsync(supplier, getExecutor());
+		}
+		catch (RejectedExecutionException e) {
+			CompletableFuture<T> future = new CompletableFuture<T>();
+			future.completeExceptionally(e);
+			return future;
+		}
+	}
+
+	private Executor getExecutor() {
+		if (executor != null) {
+			return executor;
+		}
+		if (defaultExecutor == null) {
+			synchronized(OracleAsyncExecutor.class) {
+				if (defaultExecutor == null) {
+					AtomicInteger counter = new AtomicInteger();
+					ThreadPoolExecutor pool = new ThreadPoolExecutor(ASYNC_THREADS, ASYNC_THREADS, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(ASYNC_QUEUE_SIZE), runnable -> {
+						Thread thread = new Thread(runnable, "oracle-async-" + counter.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}, new ThreadPoolExecutor.AbortPolicy());
+					pool.allowCoreThreadTimeOut(true);
+					defaultExecutor = pool;
+				}
+			}
+		}
+		return defaultExecutor;
+	}
+
+	private static boolean isReactive(PreparedStatement statement) {
+		try {
+			return ORACLE_STATEMENT != null && statement.isWrapperFor(ORACLE_STATEMENT);
+		}
+		catch (SQLException e) {
+			return false;
+		}
+	}
+
+	// the publishers of the driver emit a single item: the result set or the update count
+	@SuppressWarnings("unchecked")
+	private static <T> CompletableFuture<T> subscribe(PreparedStatement statement, Method method) {
+		CompletableFuture<T> future = new CompletableFuture<T>();
+		try {
+			Object publisher = method.invoke(statement.unwrap(ORACLE_STATEMENT));
+			Object subscriber = Proxy.newProxyInstance(OracleAsyncExecutor.class.getClassLoader(), new Class<?>[] { SUBSCRIBER }, new InvocationHandler() {
+				private volatile Object result;
+				@Override
+				public Object invoke(Object proxy, Method invoked, Object[] args) throws Throwable {
+					switch (invoked.getName()) {
+						case "onSubscribe":
+							REQUEST.invoke(args[0], Long.MAX_VALUE);
+						break;
+						case "onNext":
+							result = args[0];
+						break;
+						case "onError":
+							future.completeExceptionally((Throwable) args[0]);
+						break;
+						case "onComplete":
+							future.complete((T) result);
+						break;
+						case "equals":
+							return proxy == args[0];
+						case "hashCode":
+							return System.identityHashCode(proxy);
+						case "toString":
+							return "OracleAsyncSubscriber";
+					}
+					return null;
+				}
+			});
+			SUBSCRIBE.invoke(publisher, subscriber);
+		}
+		catch (InvocationTargetException e) {
+			future.completeExceptionally(e.getCause());
+		}
+		catch (IllegalAccessException | SQLException e) {
+			future.completeExceptionally(e);
+		}
+		return future;
+	}
+}
@@ -0,0 +1,133 @@
+/*
+* Copyright (C) 2016 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.eai.module.jdbc.dialects;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.sql.Blob;
+import java.sql.SQLException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import oracle.jdbc.OracleBlob;
+
+/**
+ * An input stream over the content of a blob that is copied when the stream is created.
+ * 
+ * The locator of a blob can only be used while we own the connection it was fetched on, the jdbc service closes the statement and returns the connection to the pool
+ * before the stream is read, at which point the connection may be closed or in use by another thread.
+ * So the blob is read while the result set is still open and freed immediately, the stream never touches the connection.
+ * 
+ * The blob is fetched in chunks that are aligned with the chunk size of the lob. Up to -Doracle.lobSpoolThreshold bytes (default 1mb) are kept in memory,
+ * larger blobs are spooled to a temporary file which is deleted when the stream is closed.
+ */
+public class OracleBlobInputStream extends InputStream {
+
+	static final long SPOOL_THRESHOLD = Long.parseLong(System.getProperty("oracle.lobSpoolThreshold", "1048576"));
+	private static final int TARGET_SIZE = 65536;
+
+	private final InputStream content;
+	private final File spool;
+
+	public OracleBlobInputStream(Blob blob) throws SQLException, IOException {
+		File spool = null;
+		try {
+			long length = blob.length();
+			if (length <= SPOOL_THRESHOLD) {
+				content = new ByteArrayInputStream(length == 0 ? new byte[0] : blob.getBytes(1, (int) length));
+			}
+			else {
+				spool = File.createTempFile("oracle-blob", ".tmp");
+				int chunkSize = getChunkSize(blob);
+				OutputStream output = new FileOutputStream(spool);
+				try {
+					long position = 1;
+					while (position <= length) {
+						byte [] chunk = blob.getBytes(position, (int) Math.min(chunkSize, length - position + 1));
+						if (chunk.length == 0) {
+							break;
+						}
+						output.write(chunk);
+						position += chunk.length;
+					}
+				}
+				finally {
+					output.close();
+				}
+				content = new BufferedInputStream(new FileInputStream(spool), TARGET_SIZE);
+			}
+		}
+		catch (SQLException | IOException | RuntimeException e) {
+			if (spool != null) {
+				spool.delete();
+			}
+			throw e;
+		}
+		finally {
+			free(blob);
+		}
+		this.spool = spool;
+	}
+
+	@Override
+	public int read() throws IOException {
+		return content.read();
+	}
+
+	@Override
+	public int read(byte[] target, int targetOffset, int targetLength) throws IOException {
+		return content.read(target, targetOffset, targetLength);
+	}
+
+	@Override
+	public int available() throws IOException {
+		return content.available();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			content.close();
+		}
+		finally {
+			if (spool != null) {
+				spool.delete();
+			}
+		}
+	}
+
+	private static int getChunkSize(Blob blob) throws SQLException {
+		int lobChunkSize = blob instanceof OracleBlob ? ((OracleBlob) blob).getChunkSize() : 0;
+		return lobChunkSize <= 0 ? TARGET_SIZE : lobChunkSize * Math.max(1, TARGET_SIZE / lobChunkSize);
+	}
+
+	private static void free(Blob blob) {
+		try {
+			blob.free();
+		}
+		catch (SQLException e) {
+			Logger.getLogger(OracleBlobInputStream.class.getName()).log(Level.FINE, "Could not free blob", e);
+		}
+	}
+}
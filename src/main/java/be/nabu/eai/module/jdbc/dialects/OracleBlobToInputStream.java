@@ -0,0 +1,56 @@
+/*
+* Copyright (C) 2016 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.eai.module.jdbc.dialects;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Blob;
+import java.sql.SQLException;
+
+import be.nabu.libs.converter.api.ConverterProvider;
+
+public class OracleBlobToInputStream implements ConverterProvider<Blob, InputStream> {
+
+	private static final String METRIC = OracleMetrics.CONVERTER + ":OracleBlobToInputStream";
+
+	@Override
+	public InputStream convert(Blob instance) {
+		OracleMetrics.sampleConverter(METRIC);
+		if (instance == null) {
+			return null;
+		}
+		// the lob has to be read while the result set is open, see OracleBlobInputStream
+		try {
+			return new OracleBlobInputStream(instance);
+		}
+		catch (SQLException | IOException e) {
+			throw new RuntimeException("Could not read the blob", e);
+		}
+	}
+
+	@Override
+	public Class<Blob> getSourceClass() {
+		return Blob.class;
+	}
+
+	@Override
+	public Class<InputStream> getTargetClass() {
+		return InputStream.class;
+	}
+
+}
@@ -0,0 +1,121 @@
+/*
+* Copyright (C) 2016 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.eai.module.jdbc.dialects;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Clob;
+import java.sql.SQLException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import oracle.jdbc.OracleClob;
+
+/**
+ * A reader over the content of a clob that is copied when the reader is created.
+ * 
+ * Like OracleBlobInputStream, the clob is read while we still own its connection and freed immediately so reading never touches the connection.
+ * Up to -Doracle.lobSpoolThreshold characters (default 1m) are kept in memory, larger clobs are spooled to a temporary file which is deleted when the reader is closed.
+ */
+public class OracleClobReader extends Reader {
+
+	private static final int TARGET_SIZE = 32768;
+
+	private final Reader content;
+	private final File spool;
+
+	public OracleClobReader(Clob clob) throws SQLException, IOException {
+		File spool = null;
+		try {
+			long length = clob.length();
+			if (length <= OracleBlobInputStream.SPOOL_THRESHOLD) {
+				content = new StringReader(length == 0 ? "" : clob.getSubString(1, (int) length));
+			}
+			else {
+				spool = File.createTempFile("oracle-clob", ".tmp");
+				int chunkSize = getChunkSize(clob);
+				Writer output = new OutputStreamWriter(new FileOutputStream(spool), StandardCharsets.UTF_8);
+				try {
+					long position = 1;
+					while (position <= length) {
+						String chunk = clob.getSubString(position, (int) Math.min(chunkSize, length - position + 1));
+						if (chunk.isEmpty()) {
+							break;
+						}
+						output.write(chunk);
+						position += chunk.length();
+					}
+				}
+				finally {
+					output.close();
+				}
+				content = new BufferedReader(new InputStreamReader(new FileInputStream(spool), StandardCharsets.UTF_8), TARGET_SIZE);
+			}
+		}
+		catch (SQLException | IOException | RuntimeException e) {
+			if (spool != null) {
+				spool.delete();
+			}
+			throw e;
+		}
+		finally {
+			free(clob);
+		}
+		this.spool = spool;
+	}
+
+	@Override
+	public int read(char[] target, int targetOffset, int targetLength) throws IOException {
+		return content.read(target, targetOffset, targetLength);
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			content.close();
+		}
+		finally {
+			if (spool != null) {
+				spool.delete();
+			}
+		}
+	}
+
+	private static int getChunkSize(Clob clob) throws SQLException {
+		int lobChunkSize = clob instanceof OracleClob ? ((OracleClob) clob).getChunkSize() : 0;
+		return lobChunkSize <= 0 ? TARGET_SIZE : lobChunkSize * Math.max(1, TARGET_SIZE / lobChunkSize);
+	}
+
+	private static void free(Clob clob) {
+		try {
+			clob.free();
+		}
+		catch (SQLException e) {
+			Logger.getLogger(OracleClobReader.class.getName()).log(Level.FINE, "Could not free clob", e);
+		}
+	}
+}
@@ -0,0 +1,56 @@
+/*
+* Copyright (C) 2016 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.eai.module.jdbc.dialects;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.sql.Clob;
+import java.sql.SQLException;
+
+import be.nabu.libs.converter.api.ConverterProvider;
+
+public class OracleClobToReader implements ConverterProvider<Clob, Reader> {
+
+	private static final String METRIC = OracleMetrics.CONVERTER + ":OracleClobToReader";
+
+	@Override
+	public Reader convert(Clob instance) {
+		OracleMetrics.sampleConverter(METRIC);
+		if (instance == null) {
+			return null;
+		}
+		// the lob has to be read while the result set is open, see OracleClobReader
+		try {
+			return new OracleClobReader(instance);
+		}
+		catch (SQLException | IOException e) {
+			throw new RuntimeException("Could not read the clob", e);
+		}
+	}
+
+	@Override
+	public Class<Clob> getSourceClass() {
+		return Clob.class;
+	}
+
+	@Override
+	public Class<Reader> getTargetClass() {
+		return Reader.class;
+	}
+
+}
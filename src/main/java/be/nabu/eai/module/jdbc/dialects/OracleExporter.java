@@ -0,0 +1,246 @@
+/*
+* Copyright (C) 2016 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.eai.module.jdbc.dialects;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import be.nabu.eai.repository.EAIRepositoryUtils;
+import be.nabu.libs.services.jdbc.JDBCUtils;
+import be.nabu.libs.types.api.ComplexContent;
+import be.nabu.libs.types.api.ComplexType;
+import be.nabu.libs.types.api.Element;
+import be.nabu.libs.types.api.SimpleType;
+
+/**
+ * Exports data to a writer one row at a time so the memory usage does not depend on the amount of rows.
+ * 
+ * There are three formats:
+ * - INSERT_ALL: batches of "insert all into ... select 1 from dual" statements, long strings are kept whole using to_clob() concatenation
+ * - SQL_LOADER: a control file (see writeControlFile) and a csv data file where every record ends with a record separator, so values can contain new lines
+ * - CSV: a csv file with a header, this can also be used for external tables
+ */
+public class OracleExporter {
+
+	public enum Mode {
+		INSERT_ALL,
+		SQL_LOADER,
+		CSV
+	}
+
+	// the end of a record in a sql loader data file, the ascii record separator followed by a new line so the file is still readable line by line
+	private static final String RECORD_TERMINATOR = "\u001E\n";
+	private static final String RECORD_TERMINATOR_HEX = "1E0A";
+
+	private static final int MAX_INSERT_ALL_COLUMNS = 999;
+
+	private static final DateTimeFormatter CSV_TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneOffset.UTC);
+
+	private final int batchSize;
+
+	public OracleExporter() {
+		this(500);
+	}
+
+	/**
+	 * The batch size is the maximum amount of rows per insert all, for wide tables it is lowered so a block stays within the column limit of oracle.
+	 */
+	public OracleExporter(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * For SQL_LOADER this writes the data file, use writeControlFile() for the control file.
+	 */
+	public void export(Mode mode, ComplexType type, Iterable<? extends ComplexContent> rows, Writer writer) throws IOException {
+		switch (mode) {
+			case INSERT_ALL:
+				writeInsertAll(type, rows, writer);
+			break;
+			case SQL_LOADER:
+				writeLoaderData(type, rows, writer);
+			break;
+			case CSV:
+				writeCsv(type, rows, writer);
+			break;
+		}
+		writer.flush();
+	}
+
+	public void writeInsertAll(ComplexType type, Iterable<? extends ComplexContent> rows, Writer writer) throws IOException {
+		List<Element<?>> elements = getElements(type);
+		StringBuilder into = new StringBuilder();
+		into.append("\tinto ").append(getTableName(type)).append(" (");
+		for (int i = 0; i < elements.size(); i++) {
+			if (i > 0) {
+				into.append(", ");
+			}
+			into.append(getColumnName(elements.get(i)));
+		}
+		into.append(") values (");
+		String intoClause = into.toString();
+		// oracle allows at most 999 columns over all the into clauses of an insert all (ORA-24335)
+		int rowsPerBlock = Math.max(1, Math.min(batchSize, MAX_INSERT_ALL_COLUMNS / Math.max(1, elements.size())));
+
+		// reused for every row
+		StringBuilder builder = new StringBuilder();
+		Date now = new Date();
+		int count = 0;
+		for (ComplexContent row : rows) {
+			builder.setLength(0);
+			if (count % rowsPerBlock == 0) {
+				builder.append("insert all\n");
+			}
+			builder.append(intoClause);
+			for (int i = 0; i < elements.size(); i++) {
+				if (i > 0) {
+					builder.append(", ");
+				}
+				Oracle.appendLiteral(builder, elements.get(i), Oracle.getInsertValue(row, elements.get(i), now), true);
+			}
+			builder.append(")\n");
+			if (++count % rowsPerBlock == 0) {
+				builder.append("select 1 from dual;\n");
+			}
+			writer.write(builder.toString());
+		}
+		if (count % rowsPerBlock != 0) {
+			writer.write("select 1 from dual;\n");
+		}
+	}
+
+	public void writeCsv(ComplexType type, Iterable<? extends ComplexContent> rows, Writer writer) throws IOException {
+		writeCsv(type, rows, writer, "\n");
+	}
+
+	/**
+	 * Writes the data file for the control file generated with writeControlFile().
+	 */
+	public void writeLoaderData(ComplexType type, Iterable<? extends ComplexContent> rows, Writer writer) throws IOException {
+		writeCsv(type, rows, writer, RECORD_TERMINATOR);
+	}
+
+	private void writeCsv(ComplexType type, Iterable<? extends ComplexContent> rows, Writer writer, String terminator) throws IOException {
+		List<Element<?>> elements = getElements(type);
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < elements.size(); i++) {
+			if (i > 0) {
+				builder.append(",");
+			}
+			builder.append(EAIRepositoryUtils.uncamelify(elements.get(i).getName()));
+		}
+		builder.append(terminator);
+		writer.write(builder.toString());
+		for (ComplexContent row : rows) {
+			builder.setLength(0);
+			for (int i = 0; i < elements.size(); i++) {
+				if (i > 0) {
+					builder.append(",");
+				}
+				appendCsvValue(builder, row.get(elements.get(i).getName()));
+			}
+			// a value that contains the terminator would end the record early
+			if (!"\n".equals(terminator) && builder.indexOf(terminator) >= 0) {
+				throw new IOException("A value contains the record terminator of the data file");
+			}
+			builder.append(terminator);
+			writer.write(builder.toString());
+		}
+	}
+
+	/**
+	 * Writes a SQL*Loader control file for a data file generated with writeLoaderData() (or export() in SQL_LOADER mode).
+	 * The records end with a dedicated terminator rather than a new line so values with new lines are loaded as is.
+	 */
+	public void writeControlFile(ComplexType type, String dataFile, Writer writer) throws IOException {
+		List<Element<?>> elements = getElements(type);
+		StringBuilder builder = new StringBuilder();
+		builder.append("options (skip=1)\n")
+			.append("load data\n")
+			.append("characterset AL32UTF8\n")
+			.append("infile '").append(dataFile.replace("'", "''")).append("' \"str x'").append(RECORD_TERMINATOR_HEX).append("'\"\n")
+			.append("append\n")
+			.append("into table ").append(getTableName(type)).append("\n")
+			.append("fields terminated by ',' optionally enclosed by '\"'\n")
+			.append("trailing nullcols\n")
+			.append("(\n");
+		for (int i = 0; i < elements.size(); i++) {
+			if (i > 0) {
+				builder.append(",\n");
+			}
+			Element<?> element = elements.get(i);
+			Class<?> instanceClass = ((SimpleType<?>) element.getType()).getInstanceClass();
+			builder.append("\t").append(getColumnName(element));
+			if (Date.class.isAssignableFrom(instanceClass)) {
+				builder.append(" timestamp \"yyyy-mm-dd hh24:mi:ss.ff3\"");
+			}
+			// sql loader defaults to char(255)
+			else if (String.class.isAssignableFrom(instanceClass)) {
+				builder.append(" char(1000000)");
+			}
+		}
+		builder.append("\n)\n");
+		writer.write(builder.toString());
+		writer.flush();
+	}
+
+	private static void appendCsvValue(StringBuilder builder, Object value) {
+		if (value == null) {
+			return;
+		}
+		String string;
+		if (value instanceof Boolean) {
+			string = (Boolean) value ? "1" : "0";
+		}
+		else if (value instanceof Date) {
+			string = CSV_TIMESTAMP.format(((Date) value).toInstant());
+		}
+		else {
+			string = value.toString();
+		}
+		if (string.indexOf(',') >= 0 || string.indexOf('"') >= 0 || string.indexOf('\n') >= 0 || string.indexOf('\r') >= 0) {
+			builder.append('"').append(string.replace("\"", "\"\"")).append('"');
+		}
+		else {
+			builder.append(string);
+		}
+	}
+
+	private static List<Element<?>> getElements(ComplexType type) {
+		List<Element<?>> elements = new ArrayList<Element<?>>();
+		for (Element<?> element : JDBCUtils.getFieldsInTable(type)) {
+			if (element.getType() instanceof SimpleType) {
+				elements.add(element);
+			}
+		}
+		return elements;
+	}
+
+	private static String getTableName(ComplexType type) {
+		return EAIRepositoryUtils.uncamelify(Oracle.getName(type.getProperties()));
+	}
+
+	private static String getColumnName(Element<?> element) {
+		return Oracle.restrict(EAIRepositoryUtils.uncamelify(element.getName()));
+	}
+}
@@ -0,0 +1,219 @@
+/*
+* Copyright (C) 2016 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.eai.module.jdbc.dialects;
+
+import java.lang.ref.WeakReference;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import oracle.jdbc.OracleConnection;
+
+/**
+ * Keeps track of the temporary lobs we create to bind large values.
+ * Temporary lobs live until the end of the session unless they are freed, with pooled connections that is effectively forever.
+ *
+ * The lobs are tracked per statement and freed once the statement is closed, which is after it has been executed.
+ * A connection can not be used by multiple threads at once so the lobs are only freed by the thread that is using their connection:
+ * when the next statement on that connection is bound (see release()) or a new lob is created on it.
+ * The lobs of a connection that is never used again are cleaned up by oracle when its session ends.
+ * Code that knows when a statement has been executed can call free(Statement) to free them immediately.
+ */
+public class OracleLobTracker {
+
+	private final OracleMetrics metrics;
+	// the statements that have lobs that are not freed yet, this is bounded by the amount of connections
+	private final List<Tracked> tracked = new ArrayList<Tracked>();
+	// the size of the list, so binding a statement does not need the lock when there is nothing to free
+	private volatile int pending;
+	private final LongAdder created = new LongAdder(), freed = new LongAdder();
+
+	public OracleLobTracker(OracleMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	public Clob createClob(Statement statement) throws SQLException {
+		Connection connection = getPhysicalConnection(statement.getConnection());
+		// we are using the connection so this is a good time to free the lobs of its previous statements
+		release(connection);
+		Clob clob = connection.createClob();
+		created.increment();
+		synchronized(tracked) {
+			Tracked current = find(statement, false);
+			if (current == null) {
+				current = new Tracked(statement, connection);
+				tracked.add(current);
+				pending = tracked.size();
+			}
+			current.lobs.add(clob);
+		}
+		return clob;
+	}
+
+	/**
+	 * Frees the lobs of the closed statements on the connection of this statement, this must be called by the thread that is using the connection.
+	 */
+	public void release(Statement statement) throws SQLException {
+		if (pending > 0) {
+			release(getPhysicalConnection(statement.getConnection()));
+		}
+	}
+
+	/**
+	 * Frees all the temporary lobs that were created on this connection, the statements that used them must have been executed.
+	 */
+	public void free(Connection connection) throws SQLException {
+		connection = getPhysicalConnection(connection);
+		List<Tracked> toFree = new ArrayList<Tracked>();
+		synchronized(tracked) {
+			Iterator<Tracked> iterator = tracked.iterator();
+			while (iterator.hasNext()) {
+				Tracked current = iterator.next();
+				if (current.connection.get() == connection) {
+					iterator.remove();
+					toFree.add(current);
+				}
+			}
+			pending = tracked.size();
+		}
+		free(toFree);
+	}
+
+	/**
+	 * Frees the lobs that belong to a statement that has been executed.
+	 */
+	public void free(Statement statement) throws SQLException {
+		Tracked current;
+		synchronized(tracked) {
+			current = find(statement, true);
+			pending = tracked.size();
+		}
+		if (current != null) {
+			freeLobs(current.lobs);
+		}
+	}
+
+	private void release(Connection connection) {
+		if (pending == 0) {
+			return;
+		}
+		List<Tracked> closed = null;
+		synchronized(tracked) {
+			Iterator<Tracked> iterator = tracked.iterator();
+			while (iterator.hasNext()) {
+				Tracked current = iterator.next();
+				Connection owner = current.connection.get();
+				// the session is gone and the lobs with it
+				if (owner == null) {
+					iterator.remove();
+				}
+				else if (owner == connection && current.isClosed()) {
+					iterator.remove();
+					if (closed == null) {
+						closed = new ArrayList<Tracked>();
+					}
+					closed.add(current);
+				}
+			}
+			pending = tracked.size();
+		}
+		free(closed);
+	}
+
+	// only called while holding the lock on the list
+	private Tracked find(Statement statement, boolean remove) {
+		Iterator<Tracked> iterator = tracked.iterator();
+		while (iterator.hasNext()) {
+			Tracked current = iterator.next();
+			if (current.getStatement() == statement) {
+				if (remove) {
+					iterator.remove();
+				}
+				return current;
+			}
+		}
+		return null;
+	}
+
+	private void free(List<Tracked> toFree) {
+		if (toFree != null) {
+			for (Tracked current : toFree) {
+				freeLobs(current.lobs);
+			}
+		}
+	}
+
+	private void freeLobs(List<Clob> lobs) {
+		for (Clob lob : lobs) {
+			try {
+				lob.free();
+				freed.increment();
+				metrics.increment(OracleMetrics.LOB_FREED);
+			}
+			catch (SQLException e) {
+				// the session may already be gone, in which case oracle has cleaned up the lob for us
+				Logger.getLogger(OracleLobTracker.class.getName()).log(Level.FINE, "Could not free temporary lob", e);
+			}
+		}
+	}
+
+	public long getCreated() {
+		return created.sum();
+	}
+
+	public long getFreed() {
+		return freed.sum();
+	}
+
+	private static Connection getPhysicalConnection(Connection connection) throws SQLException {
+		return connection instanceof OracleConnection ? connection : connection.unwrap(OracleConnection.class);
+	}
+
+	private static class Tracked {
+		private final WeakReference<Statement> statement;
+		private final WeakReference<Connection> connection;
+		private final List<Clob> lobs = new ArrayList<Clob>();
+
+		public Tracked(Statement statement, Connection connection) {
+			this.statement = new WeakReference<Statement>(statement);
+			this.connection = new WeakReference<Connection>(connection);
+		}
+
+		public Statement getStatement() {
+			return statement.get();
+		}
+
+		// a statement that was garbage collected will not be executed anymore either
+		public boolean isClosed() {
+			Statement current = statement.get();
+			try {
+				return current == null || current.isClosed();
+			}
+			catch (SQLException e) {
+				return true;
+			}
+		}
+	}
+}
@@ -0,0 +1,255 @@
+/*
+* Copyright (C) 2016 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.eai.module.jdbc.dialects;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import be.nabu.libs.metrics.api.MetricInstance;
+
+/**
+ * The counters and timers of a dialect instance (so per pool).
+ * The counters are striped so incrementing them from many threads does not contend on a single cache line.
+ * 
+ * Timers are sampled: only one in -Doracle.metricsSampleRate (default 64) calls reads the clock, the count of a timer is the amount of samples, not the amount of calls.
+ * The converter counters are sampled at the same rate because they are hit for every value, a sample counts for the sample rate so the counter is an estimate of the amount of calls.
+ * Metrics are enabled by default, they can be switched off for all pools with -Doracle.metrics=false or per pool with setEnabled().
+ * If a metric instance is set (the dialect uses the one of its pool), the counters and timers are published to it as well.
+ * The counters are not forwarded per increment, that would bring back the contention the striping avoids: the dialect publishes what was added since the last time at most once per -Doracle.metricsPublishInterval (default 10000 ms).
+ * The timer samples are rare enough to be published as they are recorded.
+ */
+public class OracleMetrics {
+
+	public static final String STATEMENT_CACHE_HIT = "statementCacheHit";
+	public static final String STATEMENT_CACHE_MISS = "statementCacheMiss";
+	public static final String STATEMENT_CACHE_EVICTION = "statementCacheEviction";
+	public static final String REWRITE_CACHE_HIT = "rewriteCacheHit";
+	public static final String REWRITE_CACHE_MISS = "rewriteCacheMiss";
+	// the timer of a full rewrite (so a rewrite cache miss)
+	public static final String REWRITE = "rewrite";
+	// suffixed with the size class of the amount of rows, e.g. mergeRewrite:10
+	public static final String MERGE_REWRITE = "mergeRewrite";
+	public static final String LOB_CREATED = "lobCreated";
+	public static final String LOB_FREED = "lobFreed";
+	public static final String ARRAY_BIND = "arrayBind";
+	public static final String PAGINATION_ROW_LIMITING = "paginationRowLimiting";
+	public static final String PAGINATION_ROWNUM = "paginationRownum";
+	public static final String PAGINATION_KEYSET = "paginationKeyset";
+	// statements executed with the result cache hint
+	public static final String RESULT_CACHE = "resultCache";
+	// suffixed with the simple name of the converter
+	public static final String CONVERTER = "converter";
+
+	private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("oracle.metrics", "true"));
+	private static final int SAMPLE_RATE = Integer.parseInt(System.getProperty("oracle.metricsSampleRate", "64"));
+	private static final long PUBLISH_INTERVAL = Long.parseLong(System.getProperty("oracle.metricsPublishInterval", "10000"));
+
+	// the converters are loaded as services, they don't know which pool they are working for
+	// the dialect registers its metrics on the thread when it rewrites a statement, the results of that statement are converted on the same thread
+	private static final ThreadLocal<OracleMetrics> current = new ThreadLocal<OracleMetrics>();
+	// for conversions that happen outside of a statement of an oracle pool
+	private static final OracleMetrics converterMetrics = new OracleMetrics();
+
+	/**
+	 * The metrics of the pool that last executed a statement on this thread.
+	 */
+	public static OracleMetrics getConverterMetrics() {
+		OracleMetrics metrics = current.get();
+		return metrics == null ? converterMetrics : metrics;
+	}
+
+	/**
+	 * Counts a conversion in the metrics of the current pool, only sampled calls look up the metrics and touch the counter.
+	 */
+	public static void sampleConverter(String name) {
+		if (ENABLED && (SAMPLE_RATE <= 1 || ThreadLocalRandom.current().nextInt(SAMPLE_RATE) == 0)) {
+			getConverterMetrics().increment(name, Math.max(1, SAMPLE_RATE));
+		}
+	}
+
+	static void setCurrent(OracleMetrics metrics) {
+		if (current.get() != metrics) {
+			current.set(metrics);
+		}
+	}
+
+	private final Map<String, LongAdder> counters = new ConcurrentHashMap<String, LongAdder>();
+	private final Map<String, Timer> timers = new ConcurrentHashMap<String, Timer>();
+	private volatile boolean enabled = ENABLED;
+	private volatile MetricInstance metricInstance;
+	// the value of each counter the last time it was published
+	private final Map<String, Long> published = new ConcurrentHashMap<String, Long>();
+	private final AtomicLong nextPublish = new AtomicLong();
+
+	public void increment(String name) {
+		increment(name, 1);
+	}
+
+	public void increment(String name, long amount) {
+		if (enabled) {
+			getCounter(name).add(amount);
+		}
+	}
+
+	public long get(String name) {
+		LongAdder counter = counters.get(name);
+		return counter == null ? 0 : counter.sum();
+	}
+
+	/**
+	 * Returns the start time if this call is sampled, 0 otherwise. Pass the result to stop().
+	 */
+	public long start() {
+		return enabled && (SAMPLE_RATE <= 1 || ThreadLocalRandom.current().nextInt(SAMPLE_RATE) == 0) ? System.nanoTime() : 0;
+	}
+
+	public void stop(String name, long started) {
+		if (started != 0) {
+			long duration = System.nanoTime() - started;
+			getTimer(name).record(duration);
+			MetricInstance metricInstance = this.metricInstance;
+			if (metricInstance != null) {
+				metricInstance.duration(name, duration, TimeUnit.NANOSECONDS);
+			}
+		}
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Publishes the counters if the publish interval has passed, this is cheap enough to call for every statement.
+	 * If several threads call it at the same time, only one of them publishes.
+	 */
+	public void publishIfDue() {
+		if (metricInstance != null) {
+			long now = System.currentTimeMillis();
+			long next = nextPublish.get();
+			if (now >= next && nextPublish.compareAndSet(next, now + PUBLISH_INTERVAL)) {
+				publish();
+			}
+		}
+	}
+
+	/**
+	 * Publishes what was added to each counter since the last time to the metric instance.
+	 */
+	public synchronized void publish() {
+		MetricInstance metricInstance = this.metricInstance;
+		if (metricInstance != null) {
+			for (Map.Entry<String, LongAdder> entry : counters.entrySet()) {
+				long value = entry.getValue().sum();
+				Long previous = published.get(entry.getKey());
+				long delta = previous == null ? value : value - previous;
+				if (delta != 0) {
+					metricInstance.increment(entry.getKey(), delta);
+					published.put(entry.getKey(), value);
+				}
+			}
+		}
+	}
+
+	public MetricInstance getMetricInstance() {
+		return metricInstance;
+	}
+
+	public void setMetricInstance(MetricInstance metricInstance) {
+		this.metricInstance = metricInstance;
+	}
+
+	/**
+	 * A sorted snapshot of all the counters.
+	 */
+	public Map<String, Long> getCounters() {
+		Map<String, Long> snapshot = new TreeMap<String, Long>();
+		for (Map.Entry<String, LongAdder> entry : counters.entrySet()) {
+			snapshot.put(entry.getKey(), entry.getValue().sum());
+		}
+		return snapshot;
+	}
+
+	/**
+	 * A sorted snapshot of the timers with the amount of samples, the total, average and maximum duration in nanoseconds.
+	 */
+	public Map<String, Map<String, Long>> getTimers() {
+		Map<String, Map<String, Long>> snapshot = new TreeMap<String, Map<String, Long>>();
+		for (Map.Entry<String, Timer> entry : timers.entrySet()) {
+			long count = entry.getValue().count.sum();
+			long total = entry.getValue().total.sum();
+			Map<String, Long> values = new LinkedHashMap<String, Long>();
+			values.put("samples", count);
+			values.put("total", total);
+			values.put("average", count == 0 ? 0 : total / count);
+			values.put("max", entry.getValue().max.get());
+			snapshot.put(entry.getKey(), values);
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Groups row counts in size classes (1, 10, 100,...) so the amount of counters stays small.
+	 */
+	public static String getSizeClass(int rows) {
+		long sizeClass = 1;
+		while (sizeClass * 10 <= rows) {
+			sizeClass *= 10;
+		}
+		return Long.toString(sizeClass);
+	}
+
+	private LongAdder getCounter(String name) {
+		LongAdder counter = counters.get(name);
+		if (counter == null) {
+			counters.putIfAbsent(name, new LongAdder());
+			counter = counters.get(name);
+		}
+		return counter;
+	}
+
+	private Timer getTimer(String name) {
+		Timer timer = timers.get(name);
+		if (timer == null) {
+			timers.putIfAbsent(name, new Timer());
+			timer = timers.get(name);
+		}
+		return timer;
+	}
+
+	private static class Timer {
+		private final LongAdder count = new LongAdder(), total = new LongAdder();
+		private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+		public void record(long duration) {
+			count.increment();
+			total.add(duration);
+			max.accumulate(duration);
+		}
+	}
+}
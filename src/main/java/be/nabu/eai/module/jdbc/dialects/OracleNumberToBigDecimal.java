@@ -0,0 +1,46 @@
+/*
+* Copyright (C) 2016 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.eai.module.jdbc.dialects;
+
+import java.math.BigDecimal;
+
+import be.nabu.libs.converter.api.ConverterProvider;
+import oracle.sql.NUMBER;
+
+public class OracleNumberToBigDecimal implements ConverterProvider<NUMBER, BigDecimal> {
+
+	private static final String METRIC = OracleMetrics.CONVERTER + ":OracleNumberToBigDecimal";
+
+	@Override
+	public BigDecimal convert(NUMBER instance) {
+		OracleMetrics.sampleConverter(METRIC);
+		// decoded from the bytes rather than through the driver's conversion
+		return instance == null ? null : OracleNumbers.toBigDecimal(instance.shareBytes());
+	}
+
+	@Override
+	public Class<NUMBER> getSourceClass() {
+		return NUMBER.class;
+	}
+
+	@Override
+	public Class<BigDecimal> getTargetClass() {
+		return BigDecimal.class;
+	}
+
+}
@@ -0,0 +1,141 @@
+/*
+* Copyright (C) 2016 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.eai.module.jdbc.dialects;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Decodes the internal oracle byte format of numbers directly, without going through the driver's conversions.
+ * 
+ * The layout is:
+ * - byte 0: the sign (highest bit set for positive numbers) and the base 100 exponent + 65 of the first digit, for negative numbers all bits are inverted
+ * - bytes 1-20: base 100 digits, stored as digit + 1 for positive numbers and 101 - digit for negative numbers
+ * - negative numbers with less than 20 digits end with 102
+ * Zero is the single byte 0x80, positive infinity is 0xFF 0x65 and negative infinity the single byte 0x00.
+ */
+final class OracleNumbers {
+
+	private OracleNumbers() {
+		// static utility
+	}
+
+	static boolean isZero(byte [] bytes) {
+		return bytes.length == 1 && (bytes[0] & 0xff) == 0x80;
+	}
+
+	static boolean isInfinity(byte [] bytes) {
+		return (bytes.length == 1 && bytes[0] == 0) || (bytes.length == 2 && (bytes[0] & 0xff) == 0xff && bytes[1] == 101);
+	}
+
+	/**
+	 * The fraction is truncated, a value that does not fit in a long throws an ArithmeticException.
+	 */
+	static long toLong(byte [] bytes) {
+		if (isZero(bytes)) {
+			return 0;
+		}
+		checkFinite(bytes);
+		boolean positive = isPositive(bytes);
+		int exponent = getExponent(bytes);
+		int digits = getDigitCount(bytes);
+		long value = 0;
+		// we accumulate negative numbers as negative values so Long.MIN_VALUE fits
+		for (int i = 0; i <= exponent; i++) {
+			int digit = i < digits ? getDigit(bytes, i, positive) : 0;
+			value = Math.addExact(Math.multiplyExact(value, 100), positive ? digit : -digit);
+		}
+		return value;
+	}
+
+	static int toInt(byte [] bytes) {
+		return Math.toIntExact(toLong(bytes));
+	}
+
+	static BigDecimal toBigDecimal(byte [] bytes) {
+		if (isZero(bytes)) {
+			return BigDecimal.ZERO;
+		}
+		checkFinite(bytes);
+		boolean positive = isPositive(bytes);
+		int exponent = getExponent(bytes);
+		int digits = getDigitCount(bytes);
+		int scale = 2 * (digits - 1 - exponent);
+		BigDecimal value;
+		// up to 9 base 100 digits fit in a long, that covers most numbers
+		if (digits <= 9) {
+			long unscaled = 0;
+			for (int i = 0; i < digits; i++) {
+				unscaled = unscaled * 100 + getDigit(bytes, i, positive);
+			}
+			// the last base 100 digit can end in a decimal 0 that is not part of the number
+			if (scale > 0 && unscaled % 10 == 0) {
+				unscaled /= 10;
+				scale--;
+			}
+			value = BigDecimal.valueOf(positive ? unscaled : -unscaled, scale);
+		}
+		else {
+			char [] characters = new char[digits * 2];
+			for (int i = 0; i < digits; i++) {
+				int digit = getDigit(bytes, i, positive);
+				characters[i * 2] = (char) ('0' + digit / 10);
+				characters[i * 2 + 1] = (char) ('0' + digit % 10);
+			}
+			int length = characters.length;
+			if (scale > 0 && characters[length - 1] == '0') {
+				length--;
+				scale--;
+			}
+			BigInteger unscaled = new BigInteger(new String(characters, 0, length));
+			value = new BigDecimal(positive ? unscaled : unscaled.negate(), scale);
+		}
+		// integers are returned without an exponent
+		return scale < 0 ? value.setScale(0) : value;
+	}
+
+	private static void checkFinite(byte [] bytes) {
+		if (isInfinity(bytes)) {
+			throw new ArithmeticException("Can not convert infinity");
+		}
+	}
+
+	private static boolean isPositive(byte [] bytes) {
+		return (bytes[0] & 0x80) != 0;
+	}
+
+	// the base 100 exponent of the first digit
+	private static int getExponent(byte [] bytes) {
+		int exponent = isPositive(bytes) ? bytes[0] : ~bytes[0];
+		return (exponent & 0x7f) - 65;
+	}
+
+	private static int getDigitCount(byte [] bytes) {
+		int digits = bytes.length - 1;
+		// the terminator of a negative number
+		if (!isPositive(bytes) && bytes[bytes.length - 1] == 102) {
+			digits--;
+		}
+		return digits;
+	}
+
+	private static int getDigit(byte [] bytes, int index, boolean positive) {
+		int value = bytes[index + 1] & 0xff;
+		return positive ? value - 1 : 101 - value;
+	}
+}
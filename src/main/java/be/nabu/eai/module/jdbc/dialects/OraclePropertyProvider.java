@@ -0,0 +1,48 @@
+/*
+* Copyright (C) 2016 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.eai.module.jdbc.dialects;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import be.nabu.libs.property.api.Property;
+import be.nabu.libs.property.api.PropertyProvider;
+import be.nabu.libs.property.api.Value;
+
+/**
+ * Makes the oracle specific type properties available so they can be set on a type.
+ */
+public class OraclePropertyProvider implements PropertyProvider {
+
+	@Override
+	public Set<Property<?>> getSupportedProperties(Value<?>... values) {
+		return new LinkedHashSet<Property<?>>(Arrays.asList(
+			PartitionColumnProperty.getInstance(),
+			PartitionIntervalProperty.getInstance(),
+			CompressionProperty.getInstance(),
+			IndexOrganizedProperty.getInstance(),
+			ReverseKeyProperty.getInstance(),
+			CompositeIndexProperty.getInstance(),
+			ResultCacheProperty.getInstance(),
+			BulkInsertProperty.getInstance(),
+			LogErrorsProperty.getInstance()
+		));
+	}
+
+}
@@ -0,0 +1,225 @@
+/*
+* Copyright (C) 2016 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.eai.module.jdbc.dialects;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The reserved words of oracle that we quote, with a lookup that does not need to allocate a string.
+ *
+ * The same words are quoted when we generate statements (e.g. a column name in a create statement) and when they appear in the free text of a statement,
+ * otherwise a column would be created with a quoted name and then referenced without quotes.
+ * In the free text we can not tell an identifier from a keyword so reserved words that structure a statement ("select", "from", "order",...) are never quoted,
+ * they can not be used as column names. The other words are quoted in the free text when they are written in lower case, like the columns are created.
+ *
+ * The bundled list can optionally be extended with the content of V$RESERVED_WORDS from the database.
+ */
+public class OracleReservedWords {
+
+	// the words we have always quoted, note that "state" is not actually reserved but existing tables have been created with a quoted column
+	private static final String [] LEGACY = new String [] { "state", "audit", "comment", "number", "resource", "size", "uid", "date", "session", "initial" };
+
+	// https://docs.oracle.com/en/database/oracle/oracle-database/19/sqlrf/Oracle-SQL-Reserved-Words.html
+	private static final String [] BUNDLED = new String [] { "access", "add", "all", "alter", "and", "any", "as", "asc", "audit", "between", "by", "char", "check",
+		"cluster", "column", "comment", "compress", "connect", "create", "current", "date", "decimal", "default", "delete", "desc", "distinct", "drop", "else",
+		"exclusive", "exists", "file", "float", "for", "from", "grant", "group", "having", "identified", "immediate", "in", "increment", "index", "initial", "insert",
+		"integer", "intersect", "into", "is", "level", "like", "lock", "long", "maxextents", "minus", "mlslabel", "mode", "modify", "noaudit", "nocompress", "not",
+		"nowait", "null", "number", "of", "offline", "on", "online", "option", "or", "order", "pctfree", "prior", "public", "raw", "rename", "resource", "revoke",
+		"row", "rowid", "rownum", "rows", "select", "session", "set", "share", "size", "smallint", "start", "successful", "synonym", "sysdate", "table", "then",
+		"to", "trigger", "uid", "union", "unique", "update", "user", "validate", "values", "varchar", "varchar2", "view", "whenever", "where", "with" };
+
+	// reserved words that are part of the statement syntax, data types and pseudo columns, these are never quoted
+	private static final String [] SYNTAX = new String [] { "add", "all", "alter", "and", "any", "as", "asc", "between", "by", "char", "check", "cluster", "column",
+		"compress", "connect", "create", "current", "decimal", "default", "delete", "desc", "distinct", "drop", "else", "exclusive", "exists", "float", "for", "from",
+		"grant", "group", "having", "identified", "immediate", "in", "increment", "index", "insert", "integer", "intersect", "into", "is", "like", "lock", "long",
+		"minus", "mode", "modify", "noaudit", "nocompress", "not", "nowait", "null", "of", "on", "option", "or", "order", "prior", "public", "raw", "rename", "revoke",
+		"rowid", "rownum", "select", "set", "share", "smallint", "start", "synonym", "sysdate", "table", "then", "to", "trigger", "union", "unique", "update", "values",
+		"varchar", "varchar2", "view", "whenever", "where", "with" };
+
+	private static final OracleReservedWords instance = new OracleReservedWords();
+
+	public static OracleReservedWords getInstance() {
+		return instance;
+	}
+
+	private final AtomicBoolean loaded = new AtomicBoolean(false);
+	private volatile WordTable all;
+
+	private OracleReservedWords() {
+		build(new ArrayList<String>());
+	}
+
+	/**
+	 * Adds the reserved words known to the database, this is only done once, if the user does not have access to the view we keep the bundled list.
+	 */
+	public void load(Connection connection) {
+		if (loaded.compareAndSet(false, true)) {
+			List<String> words = new ArrayList<String>();
+			try {
+				Statement query = connection.createStatement();
+				try {
+					ResultSet result = query.executeQuery("select keyword from v$reserved_words where reserved = 'Y'");
+					while (result.next()) {
+						String keyword = result.getString(1);
+						// the view also contains symbols, we only need words that can be identifiers
+						if (keyword != null && keyword.trim().matches("[a-zA-Z][\\w$#]*")) {
+							words.add(keyword.trim().toLowerCase());
+						}
+					}
+				}
+				finally {
+					query.close();
+				}
+				build(words);
+			}
+			catch (SQLException e) {
+				Logger.getLogger(OracleReservedWords.class.getName()).log(Level.FINE, "Could not load the reserved words from the database, using the bundled list", e);
+			}
+		}
+	}
+
+	private void build(Collection<String> additional) {
+		Set<String> words = new LinkedHashSet<String>();
+		words.addAll(Arrays.asList(BUNDLED));
+		words.addAll(additional);
+		words.removeAll(Arrays.asList(SYNTAX));
+		// the legacy words have always been quoted, even the ones that are also a data type
+		words.addAll(Arrays.asList(LEGACY));
+		all = new WordTable(words);
+		// previously rewritten statements may have been rewritten with a different set
+		if (!additional.isEmpty() && Oracle.getRewriteCache() != null) {
+			Oracle.getRewriteCache().clear();
+		}
+	}
+
+	/**
+	 * Whether the identifier has to be quoted, regardless of case.
+	 */
+	public boolean isReserved(String word) {
+		return all.contains(word, 0, word.length(), false);
+	}
+
+	/**
+	 * Whether the word at the given position in the statement should be quoted when it appears in the free text of a statement.
+	 * Only lower case words match, this is how we create them.
+	 */
+	public boolean isQuotable(CharSequence sql, int start, int end) {
+		return all.contains(sql, start, end, true);
+	}
+
+	public int getMaxLength() {
+		return all.maxLength;
+	}
+
+	/**
+	 * A list view of the words we quote, the lookup methods are backed by the hash table.
+	 */
+	public List<String> asList() {
+		final WordTable table = all;
+		return new AbstractList<String>() {
+			@Override
+			public String get(int index) {
+				return table.words[index];
+			}
+			@Override
+			public int size() {
+				return table.words.length;
+			}
+			@Override
+			public boolean contains(Object object) {
+				return object instanceof String && table.contains((String) object, 0, ((String) object).length(), false);
+			}
+			@Override
+			public int indexOf(Object object) {
+				return contains(object) ? super.indexOf(((String) object).toLowerCase()) : -1;
+			}
+		};
+	}
+
+	/**
+	 * A frozen open addressing hash table with a case insensitive hash so we can look up regions of a larger string.
+	 */
+	private static class WordTable {
+		private final String [] words;
+		private final String [] table;
+		private final int mask, maxLength;
+
+		public WordTable(Collection<String> words) {
+			this.words = words.toArray(new String[words.size()]);
+			int size = Integer.highestOneBit(Math.max(words.size(), 1) * 4);
+			table = new String[size];
+			mask = size - 1;
+			int maxLength = 0;
+			for (String word : words) {
+				int index = hash(word, 0, word.length()) & mask;
+				while (table[index] != null) {
+					index = (index + 1) & mask;
+				}
+				table[index] = word;
+				maxLength = Math.max(maxLength, word.length());
+			}
+			this.maxLength = maxLength;
+		}
+
+		public boolean contains(CharSequence sequence, int start, int end, boolean caseSensitive) {
+			int length = end - start;
+			if (length == 0 || length > maxLength) {
+				return false;
+			}
+			int index = hash(sequence, start, end) & mask;
+			while (table[index] != null) {
+				if (table[index].length() == length && matches(table[index], sequence, start, caseSensitive)) {
+					return true;
+				}
+				index = (index + 1) & mask;
+			}
+			return false;
+		}
+
+		private static boolean matches(String word, CharSequence sequence, int start, boolean caseSensitive) {
+			for (int i = 0; i < word.length(); i++) {
+				char character = sequence.charAt(start + i);
+				if (word.charAt(i) != (caseSensitive ? character : Character.toLowerCase(character))) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private static int hash(CharSequence sequence, int start, int end) {
+			int hash = 0;
+			for (int i = start; i < end; i++) {
+				hash = 31 * hash + Character.toLowerCase(sequence.charAt(i));
+			}
+			return hash ^ (hash >>> 16);
+		}
+	}
+}
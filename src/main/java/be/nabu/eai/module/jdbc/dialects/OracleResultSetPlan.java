@@ -0,0 +1,229 @@
+/*
+* Copyright (C) 2016 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.eai.module.jdbc.dialects;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import be.nabu.eai.repository.EAIRepositoryUtils;
+import be.nabu.libs.types.TypeUtils;
+import be.nabu.libs.types.api.ComplexContent;
+import be.nabu.libs.types.api.ComplexType;
+import be.nabu.libs.types.api.Element;
+import be.nabu.libs.types.api.SimpleType;
+import oracle.jdbc.OracleTypes;
+import oracle.sql.TIMESTAMPTZ;
+
+/**
+ * Maps the columns of a result set onto the fields of an output type using the cheapest typed getter for the target type of each field.
+ * This avoids fetching generic objects (e.g. a BigDecimal for every number or an oracle.sql.TIMESTAMP) that then have to be converted.
+ * 
+ * A plan is built once per query and output type, it can be reused for every row of every execution.
+ * Get it with Oracle.getResultSetPlan() when reading row by row, or use Oracle.extract() to read the whole result set.
+ */
+public class OracleResultSetPlan {
+
+	public interface Extractor {
+		public Object extract(ResultSet resultSet, int column) throws SQLException;
+	}
+
+	private static final Extractor LONG = (resultSet, column) -> {
+		long value = resultSet.getLong(column);
+		return resultSet.wasNull() ? null : value;
+	};
+	private static final Extractor INTEGER = (resultSet, column) -> {
+		int value = resultSet.getInt(column);
+		return resultSet.wasNull() ? null : value;
+	};
+	private static final Extractor SHORT = (resultSet, column) -> {
+		short value = resultSet.getShort(column);
+		return resultSet.wasNull() ? null : value;
+	};
+	private static final Extractor DOUBLE = (resultSet, column) -> {
+		double value = resultSet.getDouble(column);
+		return resultSet.wasNull() ? null : value;
+	};
+	private static final Extractor FLOAT = (resultSet, column) -> {
+		float value = resultSet.getFloat(column);
+		return resultSet.wasNull() ? null : value;
+	};
+	// booleans are stored as number(1)
+	private static final Extractor BOOLEAN = (resultSet, column) -> {
+		int value = resultSet.getInt(column);
+		return resultSet.wasNull() ? null : value != 0;
+	};
+	private static final Extractor BIG_DECIMAL = (resultSet, column) -> resultSet.getBigDecimal(column);
+	private static final Extractor BIG_INTEGER = (resultSet, column) -> {
+		BigDecimal value = resultSet.getBigDecimal(column);
+		return value == null ? null : value.toBigInteger();
+	};
+	private static final Extractor STRING = (resultSet, column) -> resultSet.getString(column);
+	// getTimestamp() goes through a Calendar, the driver builds a LocalDateTime straight from the bytes which we interpret in the default zone like getTimestamp() does
+	// this is only correct for a date or timestamp without a time zone
+	private static final Extractor TIMESTAMP = (resultSet, column) -> {
+		LocalDateTime value = resultSet.getObject(column, LocalDateTime.class);
+		return value == null ? null : OracleTemporals.toDate(value, OracleTemporals.getDefaultZone());
+	};
+	// the date time of a timestamp with time zone is stored in UTC, the offset or region only matters for display
+	private static final Extractor TIMESTAMP_TZ = (resultSet, column) -> {
+		Object value = resultSet.getObject(column);
+		if (value instanceof TIMESTAMPTZ) {
+			return new Date(OracleTemporals.toEpochMillisUTC(((TIMESTAMPTZ) value).shareBytes()));
+		}
+		Timestamp timestamp = resultSet.getTimestamp(column);
+		return timestamp == null ? null : new Date(timestamp.getTime());
+	};
+	// a timestamp with local time zone is returned in the session time zone, only the driver knows that zone so we let it convert to an instant
+	private static final Extractor TIMESTAMP_LTZ = (resultSet, column) -> {
+		Timestamp value = resultSet.getTimestamp(column);
+		return value == null ? null : new Date(value.getTime());
+	};
+	private static final Extractor BYTES = (resultSet, column) -> resultSet.getBytes(column);
+	private static final Extractor OBJECT = (resultSet, column) -> resultSet.getObject(column);
+
+	private final int [] columns;
+	private final String [] fields;
+	private final Extractor [] extractors;
+
+	private OracleResultSetPlan(int [] columns, String [] fields, Extractor [] extractors) {
+		this.columns = columns;
+		this.fields = fields;
+		this.extractors = extractors;
+	}
+
+	/**
+	 * Columns that do not map to a field of the output are skipped. Oracle returns upper case labels, we match them case insensitively against the field name and the uncamelified field name.
+	 */
+	public static OracleResultSetPlan build(ResultSetMetaData metadata, ComplexType output) throws SQLException {
+		Map<String, Element<?>> elements = new HashMap<String, Element<?>>();
+		for (Element<?> child : TypeUtils.getAllChildren(output)) {
+			if (child.getType() instanceof SimpleType) {
+				elements.put(child.getName().toLowerCase(), child);
+				elements.put(EAIRepositoryUtils.uncamelify(child.getName()).toLowerCase(), child);
+			}
+		}
+		List<Integer> columns = new ArrayList<Integer>();
+		List<String> fields = new ArrayList<String>();
+		List<Extractor> extractors = new ArrayList<Extractor>();
+		for (int i = 1; i <= metadata.getColumnCount(); i++) {
+			Element<?> element = elements.get(metadata.getColumnLabel(i).toLowerCase());
+			if (element != null) {
+				columns.add(i);
+				fields.add(element.getName());
+				extractors.add(getExtractor(((SimpleType<?>) element.getType()).getInstanceClass(), metadata.getColumnType(i), metadata.getColumnLabel(i)));
+			}
+		}
+		int [] columnArray = new int[columns.size()];
+		for (int i = 0; i < columnArray.length; i++) {
+			columnArray[i] = columns.get(i);
+		}
+		return new OracleResultSetPlan(columnArray, fields.toArray(new String[fields.size()]), extractors.toArray(new Extractor[extractors.size()]));
+	}
+
+	/**
+	 * The target type decides which getter we use, for dates the column type decides how the value is interpreted.
+	 */
+	private static Extractor getExtractor(Class<?> instanceClass, int columnType, String columnLabel) {
+		if (Long.class.equals(instanceClass)) {
+			return LONG;
+		}
+		else if (Integer.class.equals(instanceClass)) {
+			return INTEGER;
+		}
+		else if (Short.class.equals(instanceClass)) {
+			return SHORT;
+		}
+		else if (Double.class.equals(instanceClass)) {
+			return DOUBLE;
+		}
+		else if (Float.class.equals(instanceClass)) {
+			return FLOAT;
+		}
+		else if (Boolean.class.equals(instanceClass)) {
+			return BOOLEAN;
+		}
+		else if (BigDecimal.class.equals(instanceClass)) {
+			return BIG_DECIMAL;
+		}
+		else if (BigInteger.class.equals(instanceClass)) {
+			return BIG_INTEGER;
+		}
+		else if (String.class.equals(instanceClass)) {
+			return STRING;
+		}
+		else if (UUID.class.equals(instanceClass)) {
+			return getUUIDExtractor(columnLabel);
+		}
+		else if (Date.class.equals(instanceClass)) {
+			if (columnType == OracleTypes.TIMESTAMPTZ) {
+				return TIMESTAMP_TZ;
+			}
+			else if (columnType == OracleTypes.TIMESTAMPLTZ) {
+				return TIMESTAMP_LTZ;
+			}
+			return TIMESTAMP;
+		}
+		else if (byte[].class.equals(instanceClass)) {
+			return BYTES;
+		}
+		return OBJECT;
+	}
+
+	// a malformed value should tell us where it came from rather than surface as a bare IllegalArgumentException
+	private static Extractor getUUIDExtractor(String columnLabel) {
+		return (resultSet, column) -> {
+			String value = resultSet.getString(column);
+			if (value == null) {
+				return null;
+			}
+			try {
+				return UUID.fromString(value);
+			}
+			catch (IllegalArgumentException e) {
+				throw new SQLException("Invalid UUID in column " + columnLabel, e);
+			}
+		};
+	}
+
+	/**
+	 * Extracts the current row of the result set into the target.
+	 */
+	public void extract(ResultSet resultSet, ComplexContent target) throws SQLException {
+		for (int i = 0; i < columns.length; i++) {
+			Object value = extractors[i].extract(resultSet, columns[i]);
+			if (value != null) {
+				target.set(fields[i], value);
+			}
+		}
+	}
+
+	public int getColumnCount() {
+		return columns.length;
+	}
+}
@@ -0,0 +1,174 @@
+/*
+* Copyright (C) 2016 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.eai.module.jdbc.dialects;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import be.nabu.libs.types.api.ComplexType;
+
+/**
+ * A size-bounded LRU cache for rewritten statements.
+ * The cache is striped over a number of segments so concurrent lookups on different statements rarely contend for the same lock.
+ */
+public class OracleRewriteCache {
+
+	private static final int SEGMENTS = 16;
+
+	private final Segment[] segments;
+	private final LongAdder hits = new LongAdder(), misses = new LongAdder(), evictions = new LongAdder();
+
+	public OracleRewriteCache(int maxSize) {
+		segments = new Segment[SEGMENTS];
+		// each segment gets an equal share, rounded up so small caches still hold something
+		int segmentSize = Math.max(1, (maxSize + SEGMENTS - 1) / SEGMENTS);
+		for (int i = 0; i < SEGMENTS; i++) {
+			segments[i] = new Segment(segmentSize);
+		}
+	}
+
+	public String get(String sql, ComplexType input, ComplexType output) {
+		return get(sql, input, output, false);
+	}
+
+	/**
+	 * A batched statement can be rewritten differently (see Oracle.rewrite()), it has its own entry.
+	 */
+	public String get(String sql, ComplexType input, ComplexType output, boolean batched) {
+		Key key = new Key(sql, input, output, batched);
+		Segment segment = getSegment(key);
+		String result;
+		synchronized(segment) {
+			result = segment.get(key);
+		}
+		if (result == null) {
+			misses.increment();
+		}
+		else {
+			hits.increment();
+		}
+		return result;
+	}
+
+	public void put(String sql, ComplexType input, ComplexType output, String rewritten) {
+		put(sql, input, output, false, rewritten);
+	}
+
+	public void put(String sql, ComplexType input, ComplexType output, boolean batched, String rewritten) {
+		Key key = new Key(sql, input, output, batched);
+		Segment segment = getSegment(key);
+		synchronized(segment) {
+			segment.put(key, rewritten);
+		}
+	}
+
+	public void clear() {
+		for (Segment segment : segments) {
+			synchronized(segment) {
+				segment.clear();
+			}
+		}
+	}
+
+	public int size() {
+		int size = 0;
+		for (Segment segment : segments) {
+			synchronized(segment) {
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	private Segment getSegment(Key key) {
+		int hash = key.hashCode();
+		// spread the higher bits, the low bits of string hashes tend to be similar for similar statements
+		hash ^= (hash >>> 16);
+		return segments[hash & (SEGMENTS - 1)];
+	}
+
+	private class Segment extends LinkedHashMap<Key, String> {
+		private static final long serialVersionUID = 1L;
+		private final int maxSize;
+
+		public Segment(int maxSize) {
+			// access order gives us LRU semantics
+			super(16, 0.75f, true);
+			this.maxSize = maxSize;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, String> eldest) {
+			if (size() > maxSize) {
+				evictions.increment();
+				return true;
+			}
+			return false;
+		}
+	}
+
+	private static class Key {
+		private final String sql;
+		private final ComplexType input, output;
+		private final boolean batched;
+		private final int hashCode;
+
+		public Key(String sql, ComplexType input, ComplexType output, boolean batched) {
+			this.sql = sql;
+			this.input = input;
+			this.output = output;
+			this.batched = batched;
+			int hashCode = sql.hashCode();
+			hashCode = 31 * hashCode + (input == null ? 0 : input.hashCode());
+			hashCode = 31 * hashCode + (output == null ? 0 : output.hashCode());
+			hashCode = 31 * hashCode + (batched ? 1 : 0);
+			this.hashCode = hashCode;
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object object) {
+			if (!(object instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) object;
+			return hashCode == other.hashCode && batched == other.batched && sql.equals(other.sql) && equals(input, other.input) && equals(output, other.output);
+		}
+
+		private static boolean equals(Object a, Object b) {
+			return a == null ? b == null : a.equals(b);
+		}
+	}
+}
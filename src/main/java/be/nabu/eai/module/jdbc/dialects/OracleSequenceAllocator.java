@@ -0,0 +1,172 @@
+/*
+* Copyright (C) 2016 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.eai.module.jdbc.dialects;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+
+/**
+ * Hands out sequence values from blocks that are reserved in a single round trip, so we don't need a round trip per generated id.
+ * 
+ * There are two ways to reserve a block:
+ * - FETCH: "select seq.nextval from dual connect by level <= n", this works on any sequence
+ * - INCREMENT: the sequence is created with "increment by n" (the block size), a single nextval reserves the range [value, value + n)
+ * 
+ * Handing out values is lock-free: threads claim an index in the current block with an atomic increment.
+ * When a block runs out, a single thread fetches the next one, the other threads that run out in the meantime wait for it and take their values from the block it installs.
+ * As with any cached sequence, values are unique but not gapless and not strictly ordered across threads.
+ */
+public class OracleSequenceAllocator {
+
+	public enum Mode {
+		FETCH,
+		INCREMENT
+	}
+
+	// the name is concatenated into the statement so we only allow plain (optionally schema qualified) identifiers
+	private static final Pattern SEQUENCE_NAME = Pattern.compile("^[A-Za-z][\\w$#]*(\\.[A-Za-z][\\w$#]*)?$");
+
+	private final String sequenceName;
+	private final int blockSize;
+	private final Mode mode;
+	private final AtomicReference<Block> current = new AtomicReference<Block>();
+	// only one thread at a time fetches a new block
+	private final Object refill = new Object();
+
+	public OracleSequenceAllocator(String sequenceName, int blockSize) {
+		this(sequenceName, blockSize, Mode.FETCH);
+	}
+
+	public OracleSequenceAllocator(String sequenceName, int blockSize, Mode mode) {
+		if (sequenceName == null || !SEQUENCE_NAME.matcher(sequenceName).matches()) {
+			throw new IllegalArgumentException("Invalid sequence name: " + sequenceName);
+		}
+		if (blockSize < 1) {
+			throw new IllegalArgumentException("The block size must be at least 1");
+		}
+		this.sequenceName = sequenceName;
+		this.blockSize = blockSize;
+		this.mode = mode;
+	}
+
+	/**
+	 * Returns the next value, the connection is only used when we need a new block.
+	 */
+	public long next(Connection connection) throws SQLException {
+		Block block = current.get();
+		if (block != null) {
+			int index = block.claimed.getAndIncrement();
+			if (index < block.size) {
+				return block.get(index);
+			}
+		}
+		synchronized (refill) {
+			// another thread may have installed a new block while we were waiting
+			block = current.get();
+			if (block != null) {
+				int index = block.claimed.getAndIncrement();
+				if (index < block.size) {
+					return block.get(index);
+				}
+			}
+			Block fetched = fetch(connection);
+			// the first value is ours
+			fetched.claimed.set(1);
+			current.set(fetched);
+			return fetched.get(0);
+		}
+	}
+
+	/**
+	 * The statement to create a sequence that works with this allocator.
+	 */
+	public String buildCreateSQL() {
+		return "create sequence " + sequenceName + (mode == Mode.INCREMENT ? " increment by " + blockSize + " nocache" : " cache " + blockSize) + ";";
+	}
+
+	public String getSequenceName() {
+		return sequenceName;
+	}
+
+	public int getBlockSize() {
+		return blockSize;
+	}
+
+	public Mode getMode() {
+		return mode;
+	}
+
+	private Block fetch(Connection connection) throws SQLException {
+		if (mode == Mode.INCREMENT) {
+			PreparedStatement statement = connection.prepareStatement("select " + sequenceName + ".nextval from dual");
+			try {
+				ResultSet result = statement.executeQuery();
+				if (!result.next()) {
+					throw new SQLException("Could not get the next value of " + sequenceName);
+				}
+				return new Block(result.getLong(1), null, blockSize);
+			}
+			finally {
+				statement.close();
+			}
+		}
+		else {
+			PreparedStatement statement = connection.prepareStatement("select " + sequenceName + ".nextval from dual connect by level <= ?");
+			try {
+				statement.setInt(1, blockSize);
+				statement.setFetchSize(blockSize);
+				ResultSet result = statement.executeQuery();
+				long [] values = new long[blockSize];
+				int size = 0;
+				while (size < blockSize && result.next()) {
+					values[size++] = result.getLong(1);
+				}
+				if (size == 0) {
+					throw new SQLException("Could not get the next value of " + sequenceName);
+				}
+				return new Block(0, values, size);
+			}
+			finally {
+				statement.close();
+			}
+		}
+	}
+
+	private static class Block {
+		private final long start;
+		// null for a contiguous range
+		private final long [] values;
+		private final int size;
+		private final AtomicInteger claimed = new AtomicInteger();
+
+		public Block(long start, long [] values, int size) {
+			this.start = start;
+			this.values = values;
+			this.size = size;
+		}
+
+		public long get(int index) {
+			return values == null ? start + index : values[index];
+		}
+	}
+}
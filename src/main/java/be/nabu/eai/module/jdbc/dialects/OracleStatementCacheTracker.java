@@ -0,0 +1,135 @@
+/*
+* Copyright (C) 2016 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.eai.module.jdbc.dialects;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import oracle.jdbc.OracleConnection;
+
+/**
+ * Configures the implicit statement cache of the driver and keeps statistics on it.
+ * 
+ * The driver does not expose hit and miss counts for the implicit cache, so we replay the statements on an LRU of the same size.
+ * The driver caches on the sql text so as long as we replay the rewritten sql, the numbers match what the driver does.
+ * 
+ * Statements are recorded when they are rewritten, which is the only place where we see every statement (also the ones without parameters) but we don't know the connection there.
+ * So instead of an LRU per connection we replay on one LRU for the pool: once the connections are warmed up they all cache the same statements so the hit rate is the same,
+ * only the misses while a new connection fills its cache are not counted.
+ */
+public class OracleStatementCacheTracker {
+
+	private static final int SEGMENTS = 16;
+
+	private final Integer cacheSize;
+	private final OracleMetrics metrics;
+	// the physical connections we have configured
+	private final Set<OracleConnection> configured = Collections.newSetFromMap(Collections.synchronizedMap(new WeakHashMap<OracleConnection, Boolean>()));
+	// striped like the rewrite cache so recording does not contend on a single lock, null as long as we don't know the cache size
+	private volatile Segment [] segments;
+
+	/**
+	 * If the cache size is not null, the implicit cache is enabled on every connection that does not have it yet.
+	 */
+	public OracleStatementCacheTracker(Integer cacheSize, OracleMetrics metrics) {
+		this.cacheSize = cacheSize;
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Enables the implicit cache on the connection if necessary, the first connection determines the size of the cache we replay on.
+	 */
+	public void configure(OracleConnection connection) {
+		if (configured.contains(connection)) {
+			return;
+		}
+		configured.add(connection);
+		int size = 0;
+		try {
+			if (cacheSize != null && cacheSize > 0 && !connection.getImplicitCachingEnabled()) {
+				connection.setStatementCacheSize(cacheSize);
+				connection.setImplicitCachingEnabled(true);
+			}
+			if (connection.getImplicitCachingEnabled()) {
+				size = connection.getStatementCacheSize();
+			}
+		}
+		catch (SQLException e) {
+			Logger.getLogger(OracleStatementCacheTracker.class.getName()).log(Level.FINE, "Could not configure the implicit statement cache", e);
+		}
+		if (segments == null && size > 0) {
+			synchronized(this) {
+				if (segments == null) {
+					Segment [] segments = new Segment[SEGMENTS];
+					int segmentSize = Math.max(1, (size + SEGMENTS - 1) / SEGMENTS);
+					for (int i = 0; i < SEGMENTS; i++) {
+						segments[i] = new Segment(segmentSize);
+					}
+					this.segments = segments;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Records the execution of a (rewritten) statement.
+	 */
+	public void record(String sql) {
+		Segment [] segments = this.segments;
+		if (sql == null || segments == null || !metrics.isEnabled()) {
+			return;
+		}
+		int hash = sql.hashCode();
+		hash ^= (hash >>> 16);
+		Segment segment = segments[hash & (SEGMENTS - 1)];
+		boolean hit;
+		synchronized(segment) {
+			hit = segment.get(sql) != null;
+			if (!hit) {
+				segment.put(sql, Boolean.TRUE);
+			}
+		}
+		metrics.increment(hit ? OracleMetrics.STATEMENT_CACHE_HIT : OracleMetrics.STATEMENT_CACHE_MISS);
+	}
+
+	private class Segment extends LinkedHashMap<String, Boolean> {
+		private static final long serialVersionUID = 1L;
+		private final int maxSize;
+
+		public Segment(int maxSize) {
+			// access order gives us LRU semantics
+			super(16, 0.75f, true);
+			this.maxSize = maxSize;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+			if (size() > maxSize) {
+				metrics.increment(OracleMetrics.STATEMENT_CACHE_EVICTION);
+				return true;
+			}
+			return false;
+		}
+	}
+}
@@ -0,0 +1,393 @@
+/*
+* Copyright (C) 2016 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.eai.module.jdbc.dialects;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Walks over a statement once, character by character, and does the rewrites that have to happen on the free text of the statement:
+ * - boolean literals are rewritten to integers
+ * - reserved words that are used as identifiers are quoted
+ * - array parameters used in an in-list are rewritten to select from the bound collection
+ * - it detects whether the statement is an "insert into ... on conflict ... do update" that has to be rewritten to a merge
+ *
+ * String literals, quoted identifiers, comments and named parameters are copied verbatim.
+ * If nothing has to change, the original string is returned without copying it.
+ */
+class OracleStatementScanner {
+
+	// a column reference, optionally qualified, e.g. "d.size" or "\"date\""
+	private static final Pattern COLUMN = Pattern.compile("(?s)^(?:(?:\"[^\"]+\"|[\\w$#]+)\\s*\\.\\s*)*(\"[^\"]+\"|[a-zA-Z_][\\w$#]*)$");
+	// an expression with an alias, e.g. "count(*) as total" or "upper(name) name"
+	private static final Pattern ALIAS = Pattern.compile("(?is)^(.*?)\\s+(as\\s+)?(\"[^\"]+\"|[a-zA-Z_][\\w$#]*)$");
+	private static final Pattern CONNECT_BY = Pattern.compile("(?i)\\bconnect\\s+by\\b");
+	// words that look like a column or an alias but are not
+	private static final List<String> NOT_A_COLUMN = Arrays.asList("null", "sysdate", "systimestamp", "current_date", "current_timestamp", "localtimestamp",
+		"rownum", "rowid", "level", "user", "uid", "end", "year", "month", "day", "hour", "minute", "second");
+
+	private final boolean booleans, reserved;
+	private boolean merge;
+	// named parameters that are bound as an array
+	private Set<String> arrays;
+
+	// the merge detection state: 0 = nothing, 1 = "insert", 2 = "insert into", 3 = "on conflict" found, 4 = "do update" found
+	private int mergeState;
+	private String previousWord;
+	// the previous token if it was a word (or number), -1 otherwise
+	private int previousStart, previousEnd;
+	// whether the previous token was a named parameter
+	private boolean previousParameter;
+	// whether the statement is a hierarchical query, null as long as we don't need to know
+	private Boolean hierarchical;
+
+	OracleStatementScanner(boolean booleans, boolean reserved) {
+		this.booleans = booleans;
+		this.reserved = reserved;
+	}
+
+	boolean isMerge() {
+		return merge;
+	}
+
+	void setArrays(Set<String> arrays) {
+		this.arrays = arrays;
+	}
+
+	String scan(String sql) {
+		merge = false;
+		mergeState = 0;
+		previousWord = null;
+		previousStart = -1;
+		previousEnd = -1;
+		previousParameter = false;
+		hierarchical = null;
+
+		int length = sql.length();
+		// only allocated once we actually change something
+		StringBuilder builder = null;
+		// everything before this offset has been copied to the builder
+		int copied = 0;
+		int wordCount = 0;
+		// the last character that was not whitespace, used to detect named parameters
+		char lastSignificant = 0;
+		int i = 0;
+		while (i < length) {
+			char current = sql.charAt(i);
+			// string literal, '' is an escaped quote which is handled by simply continuing the scan
+			if (current == '\'') {
+				i = skipUntil(sql, i + 1, '\'');
+				lastSignificant = current;
+				previousStart = -1;
+			}
+			// quoted identifier
+			else if (current == '"') {
+				i = skipUntil(sql, i + 1, '"');
+				lastSignificant = current;
+				previousStart = -1;
+			}
+			// single line comment
+			else if (current == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+				int end = sql.indexOf('\n', i + 2);
+				i = end < 0 ? length : end + 1;
+			}
+			// multi line comment (including hints)
+			else if (current == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+				int end = sql.indexOf("*/", i + 2);
+				i = end < 0 ? length : end + 2;
+			}
+			else if (isWordStart(current)) {
+				int start = i;
+				while (i < length && isWordPart(sql.charAt(i))) {
+					i++;
+				}
+				// alternative quoting like q'[...]' or nq'{...}'
+				if (i < length && sql.charAt(i) == '\'' && isAlternativeQuote(sql, start, i)) {
+					i = skipAlternativeQuote(sql, i);
+					lastSignificant = '\'';
+					previousStart = -1;
+					continue;
+				}
+				// named parameters are never rewritten, unless they are an array in an in-list: "in (:list)" becomes "in (select column_value from table(:list))"
+				if (lastSignificant == ':') {
+					if (arrays != null && !arrays.isEmpty() && isFollowedBy(sql, i, ')')) {
+						int colon = skipWhitespaceBackwards(sql, start - 1);
+						int bracket = skipWhitespaceBackwards(sql, colon - 1);
+						int in = skipWhitespaceBackwards(sql, bracket - 1);
+						if (bracket >= 0 && sql.charAt(bracket) == '(' && in >= 1 && isWordIgnoreCase(sql, in - 1, in + 1, "in")
+								&& (in < 2 || !isWordPart(sql.charAt(in - 2))) && arrays.contains(sql.substring(start, i))) {
+							if (builder == null) {
+								builder = new StringBuilder(length + 64);
+							}
+							builder.append(sql, copied, colon).append("select column_value from table(").append(sql, colon, i).append(")");
+							copied = i;
+						}
+					}
+					lastSignificant = 'a';
+					wordCount++;
+					previousStart = -1;
+					previousParameter = true;
+					continue;
+				}
+				detectMerge(sql, start, i, wordCount);
+				String replacement = null;
+				if (booleans && isWord(sql, start, i, "true")) {
+					replacement = "1";
+				}
+				else if (booleans && isWord(sql, start, i, "false")) {
+					replacement = "0";
+				}
+				// the first word is the statement verb and function calls are never quoted
+				else if (reserved && wordCount > 0 && !isFollowedBy(sql, i, '(') && !isKeyword(sql, start, i)) {
+					replacement = Oracle.restrict(sql, start, i);
+				}
+				if (replacement != null) {
+					if (builder == null) {
+						builder = new StringBuilder(length + 16);
+					}
+					builder.append(sql, copied, start).append(replacement);
+					copied = i;
+				}
+				lastSignificant = 'a';
+				wordCount++;
+				previousStart = start;
+				previousEnd = i;
+				previousParameter = false;
+				continue;
+			}
+			else {
+				if (!Character.isWhitespace(current)) {
+					lastSignificant = current;
+					previousStart = -1;
+					previousParameter = false;
+				}
+				i++;
+			}
+		}
+		if (builder == null) {
+			return sql;
+		}
+		builder.append(sql, copied, length);
+		return builder.toString();
+	}
+
+	/**
+	 * A few reserved words that we quote as a column name are also used as a keyword in lower case:
+	 * - "row" and "rows" after a number or parameter (e.g. "fetch next 10 rows only") or after "first", "next" and "each"
+	 * - "level" in a hierarchical query
+	 */
+	private boolean isKeyword(String sql, int start, int end) {
+		if (isWord(sql, start, end, "rows") || isWord(sql, start, end, "row")) {
+			return previousParameter || (previousStart >= 0 && (Character.isDigit(sql.charAt(previousStart))
+				|| isWordIgnoreCase(sql, previousStart, previousEnd, "first") || isWordIgnoreCase(sql, previousStart, previousEnd, "next") || isWordIgnoreCase(sql, previousStart, previousEnd, "each")));
+		}
+		else if (isWord(sql, start, end, "level")) {
+			if (hierarchical == null) {
+				hierarchical = CONNECT_BY.matcher(sql).find();
+			}
+			return hierarchical;
+		}
+		return false;
+	}
+
+	/**
+	 * The names of the columns selected by the outer select of a query (in the notation of the statement) or null if we can not determine them.
+	 * This is the case for "*", expressions without an alias, duplicate names or anything that is not a plain select.
+	 */
+	static List<String> getSelectedColumns(String sql) {
+		int length = sql.length();
+		int depth = 0;
+		List<String> items = null;
+		int itemStart = 0;
+		int i = 0;
+		while (i < length) {
+			char current = sql.charAt(i);
+			if (current == '\'') {
+				i = skipUntil(sql, i + 1, '\'');
+			}
+			else if (current == '"') {
+				i = skipUntil(sql, i + 1, '"');
+			}
+			else if (current == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+				int end = sql.indexOf('\n', i + 2);
+				i = end < 0 ? length : end + 1;
+			}
+			else if (current == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+				int end = sql.indexOf("*/", i + 2);
+				i = end < 0 ? length : end + 2;
+				// a hint between select and the first column
+				if (items != null && items.isEmpty() && sql.substring(itemStart, i).trim().startsWith("/*")) {
+					itemStart = i;
+				}
+			}
+			else if (current == '(') {
+				depth++;
+				i++;
+			}
+			else if (current == ')') {
+				depth--;
+				i++;
+			}
+			else if (current == ',' && depth == 0 && items != null) {
+				items.add(sql.substring(itemStart, i).trim());
+				itemStart = ++i;
+			}
+			else if (isWordStart(current)) {
+				int start = i;
+				while (i < length && isWordPart(sql.charAt(i))) {
+					i++;
+				}
+				if (i < length && sql.charAt(i) == '\'' && isAlternativeQuote(sql, start, i)) {
+					i = skipAlternativeQuote(sql, i);
+				}
+				else if (depth == 0 && items == null && isWordIgnoreCase(sql, start, i, "select")) {
+					items = new ArrayList<String>();
+					itemStart = i;
+				}
+				else if (depth == 0 && items != null && isWordIgnoreCase(sql, start, i, "from")) {
+					items.add(sql.substring(itemStart, start).trim());
+					return toColumns(items);
+				}
+			}
+			else {
+				i++;
+			}
+		}
+		return null;
+	}
+
+	private static List<String> toColumns(List<String> items) {
+		List<String> columns = new ArrayList<String>();
+		List<String> names = new ArrayList<String>();
+		for (int i = 0; i < items.size(); i++) {
+			String item = items.get(i);
+			if (i == 0) {
+				item = item.replaceFirst("(?is)^(distinct|unique|all)\\s+", "");
+			}
+			String column = null;
+			Matcher matcher = COLUMN.matcher(item);
+			if (matcher.matches()) {
+				column = matcher.group(1);
+			}
+			else {
+				matcher = ALIAS.matcher(item);
+				// without "as", the alias has to follow a complete expression, not an operator like in "a + b"
+				if (matcher.matches() && (matcher.group(2) != null || isExpressionEnd(matcher.group(1).charAt(matcher.group(1).length() - 1)))) {
+					column = matcher.group(3);
+				}
+			}
+			if (column == null || NOT_A_COLUMN.contains(column.toLowerCase())) {
+				return null;
+			}
+			String name = column.startsWith("\"") ? column : column.toUpperCase();
+			if (names.contains(name)) {
+				return null;
+			}
+			names.add(name);
+			columns.add(column);
+		}
+		return columns.isEmpty() ? null : columns;
+	}
+
+	private static boolean isExpressionEnd(char character) {
+		return isWordPart(character) || character == ')' || character == '\'' || character == '"';
+	}
+
+	private void detectMerge(String sql, int start, int end, int wordCount) {
+		if (mergeState == 0 && wordCount == 0 && isWordIgnoreCase(sql, start, end, "insert")) {
+			mergeState = 1;
+		}
+		else if (mergeState == 1) {
+			mergeState = wordCount == 1 && isWordIgnoreCase(sql, start, end, "into") ? 2 : -1;
+		}
+		else if (mergeState == 2 && "on".equals(previousWord) && isWordIgnoreCase(sql, start, end, "conflict")) {
+			mergeState = 3;
+		}
+		else if (mergeState == 3 && "do".equals(previousWord) && isWordIgnoreCase(sql, start, end, "update")) {
+			mergeState = 4;
+			merge = true;
+		}
+		// we only need to remember the words that start a two-word sequence
+		if (mergeState == 2 && isWordIgnoreCase(sql, start, end, "on")) {
+			previousWord = "on";
+		}
+		else if (mergeState == 3 && isWordIgnoreCase(sql, start, end, "do")) {
+			previousWord = "do";
+		}
+		else {
+			previousWord = null;
+		}
+	}
+
+	private static int skipUntil(String sql, int from, char end) {
+		int index = sql.indexOf(end, from);
+		return index < 0 ? sql.length() : index + 1;
+	}
+
+	private static boolean isAlternativeQuote(String sql, int start, int end) {
+		return (end - start == 1 && (sql.charAt(start) == 'q' || sql.charAt(start) == 'Q'))
+			|| (end - start == 2 && (sql.charAt(start) == 'n' || sql.charAt(start) == 'N') && (sql.charAt(start + 1) == 'q' || sql.charAt(start + 1) == 'Q'));
+	}
+
+	// the offset points to the opening quote
+	private static int skipAlternativeQuote(String sql, int offset) {
+		if (offset + 1 >= sql.length()) {
+			return sql.length();
+		}
+		char open = sql.charAt(offset + 1);
+		char close = open == '[' ? ']' : open == '{' ? '}' : open == '(' ? ')' : open == '<' ? '>' : open;
+		int index = sql.indexOf(close + "'", offset + 2);
+		return index < 0 ? sql.length() : index + 2;
+	}
+
+	// returns the offset of the first non-whitespace character at or before the given offset
+	private static int skipWhitespaceBackwards(String sql, int offset) {
+		while (offset >= 0 && Character.isWhitespace(sql.charAt(offset))) {
+			offset--;
+		}
+		return offset;
+	}
+
+	private static boolean isFollowedBy(String sql, int offset, char character) {
+		while (offset < sql.length() && Character.isWhitespace(sql.charAt(offset))) {
+			offset++;
+		}
+		return offset < sql.length() && sql.charAt(offset) == character;
+	}
+
+	private static boolean isWord(String sql, int start, int end, String word) {
+		return end - start == word.length() && sql.startsWith(word, start);
+	}
+
+	private static boolean isWordIgnoreCase(String sql, int start, int end, String word) {
+		return end - start == word.length() && sql.regionMatches(true, start, word, 0, word.length());
+	}
+
+	private static boolean isWordStart(char character) {
+		return Character.isLetterOrDigit(character) || character == '_';
+	}
+
+	// oracle allows $ and # in unquoted identifiers (e.g. v$session)
+	private static boolean isWordPart(char character) {
+		return Character.isLetterOrDigit(character) || character == '_' || character == '$' || character == '#';
+	}
+}
@@ -0,0 +1,179 @@
+/*
+* Copyright (C) 2016 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.eai.module.jdbc.dialects;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * Decodes the internal oracle byte format of dates and timestamps directly, without going through java.sql.Timestamp and Calendar.
+ * 
+ * The layout is:
+ * - bytes 0-6: century + 100, year + 100, month, day, hour + 1, minute + 1, second + 1
+ * - bytes 7-10: nanoseconds (big endian), only for timestamps
+ * - bytes 11-12: timezone hour + 20, timezone minute + 60, only for timestamps with time zone where the date time itself is in UTC
+ * If the highest bit of the timezone hour is set, it is a region id rather than an offset.
+ */
+final class OracleTemporals {
+
+	private static final long DAYS_0000_TO_1970 = 719528;
+	// how long (in ms) we use the cached default zone before checking whether it was changed
+	private static final long ZONE_REFRESH_INTERVAL = Long.parseLong(System.getProperty("oracle.zoneRefreshInterval", "1000"));
+
+	private static volatile DefaultZone defaultZone = new DefaultZone(TimeZone.getDefault().toZoneId(), System.currentTimeMillis());
+
+	private OracleTemporals() {
+		// static utility
+	}
+
+	/**
+	 * ZoneId.systemDefault() clones the default TimeZone and resolves the ZoneId on every call.
+	 * There is no notification when the default is changed so we check again after the refresh interval.
+	 */
+	static ZoneId getDefaultZone() {
+		DefaultZone current = defaultZone;
+		long now = System.currentTimeMillis();
+		if (now - current.resolved >= ZONE_REFRESH_INTERVAL) {
+			current = new DefaultZone(TimeZone.getDefault().toZoneId(), now);
+			defaultZone = current;
+		}
+		return current.zone;
+	}
+
+	/**
+	 * Use this after changing the default time zone if the conversions have to pick it up immediately.
+	 */
+	static void refreshDefaultZone() {
+		defaultZone = new DefaultZone(TimeZone.getDefault().toZoneId(), System.currentTimeMillis());
+	}
+
+	static int getYear(byte [] bytes) {
+		return ((bytes[0] & 0xff) - 100) * 100 + ((bytes[1] & 0xff) - 100);
+	}
+
+	static int getNanos(byte [] bytes) {
+		if (bytes.length < 11) {
+			return 0;
+		}
+		return ((bytes[7] & 0xff) << 24) | ((bytes[8] & 0xff) << 16) | ((bytes[9] & 0xff) << 8) | (bytes[10] & 0xff);
+	}
+
+	/**
+	 * The seconds since the epoch if the date time is interpreted as UTC.
+	 */
+	static long getEpochSecond(byte [] bytes) {
+		long epochDay = toEpochDay(getYear(bytes), bytes[2], bytes[3]);
+		return epochDay * 86400 + ((bytes[4] & 0xff) - 1) * 3600 + ((bytes[5] & 0xff) - 1) * 60 + ((bytes[6] & 0xff) - 1);
+	}
+
+	static LocalDateTime toLocalDateTime(byte [] bytes) {
+		return LocalDateTime.of(getYear(bytes), bytes[2], bytes[3], (bytes[4] & 0xff) - 1, (bytes[5] & 0xff) - 1, (bytes[6] & 0xff) - 1, getNanos(bytes));
+	}
+
+	/**
+	 * The date time is a local date time in the given zone (this is how timestampValue() interprets it).
+	 */
+	static long toEpochMillis(byte [] bytes, ZoneId zone) {
+		return (getEpochSecond(bytes) - getOffsetSeconds(bytes, zone)) * 1000 + getNanos(bytes) / 1000000;
+	}
+
+	static Instant toInstant(byte [] bytes, ZoneId zone) {
+		return Instant.ofEpochSecond(getEpochSecond(bytes) - getOffsetSeconds(bytes, zone), getNanos(bytes));
+	}
+
+	/**
+	 * Like Timestamp.valueOf(value) but without the Calendar, for a fixed offset zone nothing but the date itself is created.
+	 */
+	static Date toDate(LocalDateTime value, ZoneId zone) {
+		ZoneRules rules = zone.getRules();
+		ZoneOffset offset = rules.isFixedOffset() ? rules.getOffset(Instant.EPOCH) : getOffset(rules, value);
+		return new Date(value.toEpochSecond(offset) * 1000 + value.getNano() / 1000000);
+	}
+
+	/**
+	 * For timestamps with a time zone, the date time is stored in UTC.
+	 */
+	static long toEpochMillisUTC(byte [] bytes) {
+		return getEpochSecond(bytes) * 1000 + getNanos(bytes) / 1000000;
+	}
+
+	/**
+	 * The offset of a timestamp with time zone, if a region is used instead of an offset we can not resolve it without the database so we default to UTC.
+	 */
+	static ZoneOffset getOffset(byte [] bytes) {
+		if (bytes.length < 13 || (bytes[11] & 0x80) != 0) {
+			return ZoneOffset.UTC;
+		}
+		return ZoneOffset.ofHoursMinutes((bytes[11] & 0xff) - 20, (bytes[12] & 0xff) - 60);
+	}
+
+	private static int getOffsetSeconds(byte [] bytes, ZoneId zone) {
+		ZoneRules rules = zone.getRules();
+		// the common case on servers, no need to build any objects
+		if (rules.isFixedOffset()) {
+			return rules.getOffset(Instant.EPOCH).getTotalSeconds();
+		}
+		return getOffset(rules, toLocalDateTime(bytes)).getTotalSeconds();
+	}
+
+	// when the clock is turned back, the Calendar used by the driver picks the offset after the transition, ZoneRules picks the one before
+	private static ZoneOffset getOffset(ZoneRules rules, LocalDateTime value) {
+		ZoneOffsetTransition transition = rules.getTransition(value);
+		return transition != null && transition.isOverlap() ? transition.getOffsetAfter() : rules.getOffset(value);
+	}
+
+	// the same algorithm as LocalDate.toEpochDay()
+	private static long toEpochDay(long year, long month, long day) {
+		long total = 365 * year;
+		if (year >= 0) {
+			total += (year + 3) / 4 - (year + 99) / 100 + (year + 399) / 400;
+		}
+		else {
+			total -= year / -4 - year / -100 + year / -400;
+		}
+		total += (367 * month - 362) / 12;
+		total += day - 1;
+		if (month > 2) {
+			total--;
+			if (!isLeapYear(year)) {
+				total--;
+			}
+		}
+		return total - DAYS_0000_TO_1970;
+	}
+
+	private static boolean isLeapYear(long year) {
+		return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+	}
+
+	private static final class DefaultZone {
+		private final ZoneId zone;
+		private final long resolved;
+
+		private DefaultZone(ZoneId zone, long resolved) {
+			this.zone = zone;
+			this.resolved = resolved;
+		}
+	}
+}
@@ -17,14 +17,25 @@
 
 package be.nabu.eai.module.jdbc.dialects;
 
+import java.util.List;
+
 import be.nabu.libs.types.api.annotation.ComplexTypeDescriptor;
 import be.nabu.libs.types.api.annotation.Field;
 
-@ComplexTypeDescriptor(propOrder = { "host", "port", "systemIdentifier", "database", "username", "password" })
+@ComplexTypeDescriptor(propOrder = { "host", "port", "hosts", "systemIdentifier", "database", "username", "password", "loadBalance", "failover", "connectTimeout", "transportConnectTimeout", "pooled", "connectionClass", "profile", "rowPrefetch", "lobPrefetchSize", "statementCacheSize", "useFetchSizeWithLongColumn", "sessionDataUnit", "clientResultCache" })
 public class OracleThinParameters {
 	private String host, database, systemIdentifier;
 	private Integer port;
 	private String username, password;
+	// additional addresses (host:port) for e.g. a RAC cluster
+	private List<String> hosts;
+	private Boolean loadBalance, failover, pooled;
+	private String connectionClass;
+	private Integer connectTimeout, transportConnectTimeout;
+	// the driver properties are added to the url, with a system identifier the url is written as a connect descriptor to support them
+	private OracleTuningProfile profile;
+	private Integer rowPrefetch, lobPrefetchSize, statementCacheSize, sessionDataUnit;
+	private Boolean useFetchSizeWithLongColumn, clientResultCache;
 	
 	@Field(defaultValue = "localhost")
 	public String getHost() {
@@ -56,6 +67,62 @@ public class OracleThinParameters {
 		this.password = password;
 	}
 
+	@Field(comment = "Additional addresses in the form host:port, the port defaults to 1521")
+	public List<String> getHosts() {
+		return hosts;
+	}
+	public void setHosts(List<String> hosts) {
+		this.hosts = hosts;
+	}
+	
+	@Field(hide = "hosts == null", comment = "Spread the connections over the addresses instead of trying them in order")
+	public Boolean getLoadBalance() {
+		return loadBalance;
+	}
+	public void setLoadBalance(Boolean loadBalance) {
+		this.loadBalance = loadBalance;
+	}
+	
+	@Field(hide = "hosts == null", comment = "Try the next address if an address can not be reached, this is the default")
+	public Boolean getFailover() {
+		return failover;
+	}
+	public void setFailover(Boolean failover) {
+		this.failover = failover;
+	}
+	
+	@Field(comment = "The maximum time (in seconds) to establish a connection, including the authentication")
+	public Integer getConnectTimeout() {
+		return connectTimeout;
+	}
+	public void setConnectTimeout(Integer connectTimeout) {
+		this.connectTimeout = connectTimeout;
+	}
+	
+	@Field(comment = "The maximum time (in seconds) to establish the network connection to an address")
+	public Integer getTransportConnectTimeout() {
+		return transportConnectTimeout;
+	}
+	public void setTransportConnectTimeout(Integer transportConnectTimeout) {
+		this.transportConnectTimeout = transportConnectTimeout;
+	}
+	
+	@Field(comment = "Use a database resident connection pool (DRCP) server process instead of a dedicated one")
+	public Boolean getPooled() {
+		return pooled;
+	}
+	public void setPooled(Boolean pooled) {
+		this.pooled = pooled;
+	}
+	
+	@Field(hide = "pooled != true", comment = "Sessions of the same connection class can be shared in the resident pool")
+	public String getConnectionClass() {
+		return connectionClass;
+	}
+	public void setConnectionClass(String connectionClass) {
+		this.connectionClass = connectionClass;
+	}
+
 	@Field(hide = "systemIdentifier != null")
 	public String getDatabase() {
 		return database;
@@ -71,6 +138,59 @@ public class OracleThinParameters {
 	public void setSystemIdentifier(String systemIdentifier) {
 		this.systemIdentifier = systemIdentifier;
 	}
-
 	
+	@Field(comment = "A preset for the driver properties below, explicitly set properties take precedence")
+	public OracleTuningProfile getProfile() {
+		return profile;
+	}
+	public void setProfile(OracleTuningProfile profile) {
+		this.profile = profile;
+	}
+	
+	@Field(comment = "The amount of rows fetched per round trip")
+	public Integer getRowPrefetch() {
+		return rowPrefetch;
+	}
+	public void setRowPrefetch(Integer rowPrefetch) {
+		this.rowPrefetch = rowPrefetch;
+	}
+	
+	@Field(comment = "The amount of lob data that is sent along with the locator")
+	public Integer getLobPrefetchSize() {
+		return lobPrefetchSize;
+	}
+	public void setLobPrefetchSize(Integer lobPrefetchSize) {
+		this.lobPrefetchSize = lobPrefetchSize;
+	}
+	
+	@Field(comment = "The size of the implicit statement cache per connection")
+	public Integer getStatementCacheSize() {
+		return statementCacheSize;
+	}
+	public void setStatementCacheSize(Integer statementCacheSize) {
+		this.statementCacheSize = statementCacheSize;
+	}
+	
+	public Boolean getUseFetchSizeWithLongColumn() {
+		return useFetchSizeWithLongColumn;
+	}
+	public void setUseFetchSizeWithLongColumn(Boolean useFetchSizeWithLongColumn) {
+		this.useFetchSizeWithLongColumn = useFetchSizeWithLongColumn;
+	}
+	
+	@Field(comment = "The session data unit (in bytes) of the network packets")
+	public Integer getSessionDataUnit() {
+		return sessionDataUnit;
+	}
+	public void setSessionDataUnit(Integer sessionDataUnit) {
+		this.sessionDataUnit = sessionDataUnit;
+	}
+	
+	@Field(comment = "Whether the client result cache is used, the size and lag are set on the server with CLIENT_RESULT_CACHE_SIZE and CLIENT_RESULT_CACHE_LAG")
+	public Boolean getClientResultCache() {
+		return clientResultCache;
+	}
+	public void setClientResultCache(Boolean clientResultCache) {
+		this.clientResultCache = clientResultCache;
+	}
 }
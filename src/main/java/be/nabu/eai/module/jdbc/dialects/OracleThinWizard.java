@@ -17,6 +17,15 @@
 
 package be.nabu.eai.module.jdbc.dialects;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
 import be.nabu.eai.module.jdbc.pool.JDBCPoolArtifact;
 import be.nabu.eai.module.jdbc.pool.api.JDBCPoolWizard;
 import be.nabu.eai.repository.api.Entry;
@@ -24,6 +33,31 @@ import be.nabu.eai.repository.resources.RepositoryEntry;
 
 public class OracleThinWizard implements JDBCPoolWizard<OracleThinParameters> {
 
+	// the driver properties we manage, these are passed in the url using the easy connect plus syntax
+	private static final String ROW_PREFETCH = "defaultRowPrefetch";
+	private static final String LOB_PREFETCH_SIZE = "oracle.jdbc.defaultLobPrefetchSize";
+	private static final String STATEMENT_CACHE_SIZE = "oracle.jdbc.implicitStatementCacheSize";
+	private static final String USE_FETCH_SIZE_WITH_LONG_COLUMN = "oracle.jdbc.useFetchSizeWithLongColumn";
+	private static final String SESSION_DATA_UNIT = "sdu";
+	private static final String CLIENT_RESULT_CACHE = "oracle.jdbc.enableQueryResultCache";
+	// the connect parameters of the easy connect plus syntax
+	private static final String CONNECT_TIMEOUT = "connect_timeout";
+	private static final String TRANSPORT_CONNECT_TIMEOUT = "transport_connect_timeout";
+	private static final String LOAD_BALANCE = "load_balance";
+	private static final String FAILOVER = "failover";
+	private static final String POOL_CONNECTION_CLASS = "pool_connection_class";
+	// an address in a connect descriptor
+	private static final Pattern ADDRESS = Pattern.compile("(?i)\\(\\s*ADDRESS\\s*=((?:\\s*\\([^()]*\\))+)\\s*\\)");
+	// the parts of a connect descriptor we can represent (per parent), a descriptor with anything else (TCPS, SECURITY, RETRY_COUNT, a DESCRIPTION_LIST,...) is not loaded
+	private static final Map<String, List<String>> DESCRIPTOR_PARTS = new HashMap<String, List<String>>();
+	static {
+		DESCRIPTOR_PARTS.put("", Arrays.asList("DESCRIPTION"));
+		DESCRIPTOR_PARTS.put("DESCRIPTION", Arrays.asList("ADDRESS_LIST", "ADDRESS", "CONNECT_DATA", "LOAD_BALANCE", "FAILOVER", "CONNECT_TIMEOUT", "TRANSPORT_CONNECT_TIMEOUT"));
+		DESCRIPTOR_PARTS.put("ADDRESS_LIST", Arrays.asList("ADDRESS", "LOAD_BALANCE", "FAILOVER"));
+		DESCRIPTOR_PARTS.put("ADDRESS", Arrays.asList("PROTOCOL", "HOST", "PORT"));
+		DESCRIPTOR_PARTS.put("CONNECT_DATA", Arrays.asList("SERVICE_NAME", "SID", "SERVER", "POOL_CONNECTION_CLASS"));
+	}
+
 	@Override
 	public String getIcon() {
 		return "oracle-icon.png";
@@ -43,27 +77,13 @@ public class OracleThinWizard implements JDBCPoolWizard<OracleThinParameters> {
 	public OracleThinParameters load(JDBCPoolArtifact pool) {
 		String jdbcUrl = pool.getConfig().getJdbcUrl();
 		if (jdbcUrl != null && jdbcUrl.startsWith("jdbc:oracle:thin:@")) {
-			OracleThinParameters parameters = new OracleThinParameters();
 			try {
-				// either jdbc:oracle:thin:@prodHost:1521:ORCL (where ORCL is the system identifier = sid)
-				// or jdbc:oracle:thin:@prodHost:1521/ORCL where ORCL is the database name
-				// additional leading // can be added like jdbc:oracle:thin:@//myHost:1521/service_name
-				String [] parts = jdbcUrl.substring("jdbc:oracle:thin:@".length()).replaceAll("^[/]+", "").split(":");
-				if (parts.length >= 2) {
-					parameters.setHost(parts[0]);
-					if (parts.length == 2) {
-						String [] subParts = parts[1].split("/");
-						parameters.setPort(Integer.parseInt(subParts[0]));
-						parameters.setDatabase(subParts[1]);
-					}
-					else {
-						parameters.setPort(Integer.parseInt(parts[1]));
-						parameters.setSystemIdentifier(parts[2]);
-					}
+				OracleThinParameters parameters = parse(jdbcUrl);
+				if (parameters != null) {
 					parameters.setUsername(pool.getConfig().getUsername());
 					parameters.setPassword(pool.getConfig().getPassword());
-					return parameters;
 				}
+				return parameters;
 			}
 			catch (Exception e) {
 				throw new RuntimeException(e);
@@ -71,6 +91,214 @@ public class OracleThinWizard implements JDBCPoolWizard<OracleThinParameters> {
 		}
 		return null;
 	}
+	
+	/**
+	 * Parses the supported url forms, returns null if the url can not be represented by the parameters:
+	 * - jdbc:oracle:thin:@prodHost:1521:ORCL (where ORCL is the system identifier = sid)
+	 * - jdbc:oracle:thin:@prodHost:1521/ORCL where ORCL is the database (service) name, additional leading // can be added like jdbc:oracle:thin:@//myHost:1521/service_name
+	 * - easy connect plus: multiple addresses, a server type and parameters, e.g. jdbc:oracle:thin:@host1:1521,host2:1521/service:pooled?load_balance=on&defaultRowPrefetch=50
+	 * - a connect descriptor: jdbc:oracle:thin:@(DESCRIPTION=(ADDRESS_LIST=(ADDRESS=(PROTOCOL=TCP)(HOST=host1)(PORT=1521)))(CONNECT_DATA=(SERVICE_NAME=service)))
+	 * Only plain tcp is supported, anything we can not write back (tcps, wallets, retries, unknown parameters,...) returns null so applying the wizard never silently drops it.
+	 */
+	static OracleThinParameters parse(String jdbcUrl) {
+		OracleThinParameters parameters = new OracleThinParameters();
+		String address = jdbcUrl.substring("jdbc:oracle:thin:@".length()).trim();
+		if (address.startsWith("(")) {
+			int end = address.lastIndexOf(')');
+			if (end + 1 < address.length() && (address.charAt(end + 1) != '?' || !loadProperties(parameters, address.substring(end + 2)))) {
+				return null;
+			}
+			return parseDescriptor(parameters, address.substring(0, end + 1));
+		}
+		int queryIndex = address.indexOf('?');
+		if (queryIndex >= 0) {
+			if (!loadProperties(parameters, address.substring(queryIndex + 1))) {
+				return null;
+			}
+			address = address.substring(0, queryIndex);
+		}
+		// easy connect can start with the protocol
+		if (address.toLowerCase().startsWith("tcp://")) {
+			address = address.substring("tcp://".length());
+		}
+		else if (address.matches("^[\\w]+://.*")) {
+			return null;
+		}
+		address = address.replaceAll("^[/]+", "");
+		int serviceIndex = address.indexOf('/');
+		// the old sid syntax: host:port:sid
+		if (serviceIndex < 0) {
+			String [] parts = address.split(":");
+			if (parts.length != 3 || address.contains(",")) {
+				return null;
+			}
+			parameters.setHost(parts[0]);
+			parameters.setPort(Integer.parseInt(parts[1]));
+			parameters.setSystemIdentifier(parts[2]);
+			return parameters;
+		}
+		String service = address.substring(serviceIndex + 1);
+		// the service can be followed by the server type
+		int serverIndex = service.indexOf(':');
+		if (serverIndex >= 0) {
+			String server = service.substring(serverIndex + 1);
+			if (server.equalsIgnoreCase("pooled")) {
+				parameters.setPooled(true);
+			}
+			// dedicated is the default, shared servers are not supported
+			else if (!server.equalsIgnoreCase("dedicated")) {
+				return null;
+			}
+			service = service.substring(0, serverIndex);
+		}
+		// an instance name (host/service/instance) can not be represented
+		if (service.contains("/")) {
+			return null;
+		}
+		parameters.setDatabase(service);
+		List<String> addresses = new ArrayList<String>(Arrays.asList(address.substring(0, serviceIndex).split("\\s*,\\s*")));
+		String [] first = addresses.remove(0).split(":");
+		parameters.setHost(first[0]);
+		parameters.setPort(first.length > 1 ? Integer.parseInt(first[1]) : 1521);
+		if (!addresses.isEmpty()) {
+			parameters.setHosts(addresses);
+		}
+		return parameters;
+	}
+	
+	private static OracleThinParameters parseDescriptor(OracleThinParameters parameters, String descriptor) {
+		if (!isRepresentable(descriptor)) {
+			return null;
+		}
+		Matcher matcher = ADDRESS.matcher(descriptor);
+		List<String> addresses = new ArrayList<String>();
+		while (matcher.find()) {
+			String host = getDescriptorValue(matcher.group(1), "HOST");
+			String port = getDescriptorValue(matcher.group(1), "PORT");
+			if (host != null) {
+				addresses.add(host + ":" + (port == null ? "1521" : port));
+			}
+		}
+		if (addresses.isEmpty()) {
+			return null;
+		}
+		String [] first = addresses.remove(0).split(":");
+		parameters.setHost(first[0]);
+		parameters.setPort(Integer.parseInt(first[1]));
+		if (!addresses.isEmpty()) {
+			parameters.setHosts(addresses);
+		}
+		parameters.setDatabase(getDescriptorValue(descriptor, "SERVICE_NAME"));
+		if (parameters.getDatabase() == null) {
+			parameters.setSystemIdentifier(getDescriptorValue(descriptor, "SID"));
+		}
+		String loadBalance = getDescriptorValue(descriptor, "LOAD_BALANCE");
+		if (loadBalance != null) {
+			parameters.setLoadBalance(isOn(loadBalance));
+		}
+		String failover = getDescriptorValue(descriptor, "FAILOVER");
+		if (failover != null) {
+			parameters.setFailover(isOn(failover));
+		}
+		String server = getDescriptorValue(descriptor, "SERVER");
+		if (server != null && server.equalsIgnoreCase("pooled")) {
+			parameters.setPooled(true);
+		}
+		parameters.setConnectionClass(getDescriptorValue(descriptor, "POOL_CONNECTION_CLASS"));
+		String connectTimeout = getDescriptorValue(descriptor, "CONNECT_TIMEOUT");
+		if (connectTimeout != null) {
+			parameters.setConnectTimeout(parseSeconds(connectTimeout));
+		}
+		String transportConnectTimeout = getDescriptorValue(descriptor, "TRANSPORT_CONNECT_TIMEOUT");
+		if (transportConnectTimeout != null) {
+			parameters.setTransportConnectTimeout(parseSeconds(transportConnectTimeout));
+		}
+		return parameters;
+	}
+	
+	/**
+	 * Checks that the descriptor only contains parts that we can write back in build().
+	 */
+	private static boolean isRepresentable(String descriptor) {
+		int [] position = new int [] { 0 };
+		return isRepresentable(descriptor, position, "") && position[0] == descriptor.length();
+	}
+	
+	private static boolean isRepresentable(String descriptor, int [] position, String parent) {
+		skipWhitespace(descriptor, position);
+		if (position[0] >= descriptor.length() || descriptor.charAt(position[0]) != '(') {
+			return false;
+		}
+		int equals = descriptor.indexOf('=', position[0]);
+		if (equals < 0) {
+			return false;
+		}
+		String key = descriptor.substring(position[0] + 1, equals).trim().toUpperCase();
+		if (!DESCRIPTOR_PARTS.get(parent).contains(key)) {
+			return false;
+		}
+		position[0] = equals + 1;
+		skipWhitespace(descriptor, position);
+		if (position[0] < descriptor.length() && descriptor.charAt(position[0]) == '(') {
+			if (!DESCRIPTOR_PARTS.containsKey(key)) {
+				return false;
+			}
+			List<String> children = new ArrayList<String>();
+			while (position[0] < descriptor.length() && descriptor.charAt(position[0]) == '(') {
+				int start = position[0];
+				if (!isRepresentable(descriptor, position, key)) {
+					return false;
+				}
+				String child = descriptor.substring(start + 1, descriptor.indexOf('=', start)).trim().toUpperCase();
+				// only addresses can be repeated and they are either in a single list or directly in the description
+				if ((!child.equals("ADDRESS") && children.contains(child)) || (child.equals("ADDRESS") && children.contains("ADDRESS_LIST")) || (child.equals("ADDRESS_LIST") && children.contains("ADDRESS"))) {
+					return false;
+				}
+				children.add(child);
+				skipWhitespace(descriptor, position);
+			}
+		}
+		else {
+			int end = descriptor.indexOf(')', position[0]);
+			if (end < 0 || DESCRIPTOR_PARTS.containsKey(key)) {
+				return false;
+			}
+			String value = descriptor.substring(position[0], end).trim();
+			if ((key.equals("PROTOCOL") && !value.equalsIgnoreCase("tcp")) || (key.equals("SERVER") && !value.equalsIgnoreCase("pooled") && !value.equalsIgnoreCase("dedicated"))) {
+				return false;
+			}
+			position[0] = end;
+		}
+		if (position[0] >= descriptor.length() || descriptor.charAt(position[0]) != ')') {
+			return false;
+		}
+		position[0]++;
+		return true;
+	}
+	
+	private static void skipWhitespace(String descriptor, int [] position) {
+		while (position[0] < descriptor.length() && Character.isWhitespace(descriptor.charAt(position[0]))) {
+			position[0]++;
+		}
+	}
+	
+	private static String getDescriptorValue(String descriptor, String key) {
+		Matcher matcher = Pattern.compile("(?i)\\(\\s*" + key + "\\s*=\\s*([^()]*?)\\s*\\)").matcher(descriptor);
+		return matcher.find() ? matcher.group(1) : null;
+	}
+	
+	private static boolean isOn(String value) {
+		return value.equalsIgnoreCase("on") || value.equalsIgnoreCase("yes") || value.equalsIgnoreCase("true");
+	}
+	
+	// timeouts are in seconds unless they have a unit (e.g. 500ms)
+	private static Integer parseSeconds(String value) {
+		value = value.trim().toLowerCase();
+		if (value.endsWith("ms")) {
+			return (int) Math.ceil(Integer.parseInt(value.substring(0, value.length() - 2).trim()) / 1000.0);
+		}
+		return Integer.parseInt(value.replaceAll("[^0-9]+$", ""));
+	}
 
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	@Override
@@ -80,14 +308,7 @@ public class OracleThinWizard implements JDBCPoolWizard<OracleThinParameters> {
 			if (isNew) {
 				existing.getConfig().setAutoCommit(false);
 			}
-			String jdbcUrl = "jdbc:oracle:thin:@" + (properties.getHost() == null ? "localhost" : properties.getHost()) + ":" + (properties.getPort() == null ? 1521 : properties.getPort());
-			if (properties.getDatabase() != null) {
-				jdbcUrl += "/" + properties.getDatabase();
-			}
-			else if (properties.getSystemIdentifier() != null) {
-				jdbcUrl += ":" + properties.getSystemIdentifier();
-			}
-			existing.getConfig().setJdbcUrl(jdbcUrl); 
+			existing.getConfig().setJdbcUrl(build(properties));
 			Class clazz = Oracle.class;
 			existing.getConfig().setDialect(clazz);
 			existing.getConfig().setDriverClassName("oracle.jdbc.OracleDriver");
@@ -98,4 +319,159 @@ public class OracleThinWizard implements JDBCPoolWizard<OracleThinParameters> {
 		}
 	}
 
+	static String build(OracleThinParameters properties) {
+		String address = (properties.getHost() == null ? "localhost" : properties.getHost()) + ":" + (properties.getPort() == null ? 1521 : properties.getPort());
+		List<String> hosts = properties.getHosts() == null ? new ArrayList<String>() : properties.getHosts();
+		for (String host : hosts) {
+			address += "," + host.trim() + (host.contains(":") ? "" : ":1521");
+		}
+		String jdbcUrl = "jdbc:oracle:thin:@";
+		if (properties.getDatabase() != null) {
+			jdbcUrl += address + "/" + properties.getDatabase();
+			if (properties.getPooled() != null && properties.getPooled()) {
+				jdbcUrl += ":pooled";
+			}
+			jdbcUrl += buildQuery(properties, true);
+		}
+		// easy connect does not support a system identifier, if we need more than the address we use a connect descriptor
+		else if (properties.getSystemIdentifier() != null) {
+			// the connect parameters are part of the descriptor, the driver properties are added as a query
+			String query = buildQuery(properties, false);
+			if (hosts.isEmpty() && query.isEmpty() && properties.getPooled() == null && properties.getConnectTimeout() == null && properties.getTransportConnectTimeout() == null) {
+				jdbcUrl += address + ":" + properties.getSystemIdentifier();
+			}
+			else {
+				jdbcUrl += buildDescriptor(properties, address.split(",")) + query;
+			}
+		}
+		else {
+			jdbcUrl += address;
+		}
+		return jdbcUrl;
+	}
+	
+	private static String buildDescriptor(OracleThinParameters properties, String [] addresses) {
+		StringBuilder builder = new StringBuilder("(DESCRIPTION=");
+		if (properties.getConnectTimeout() != null) {
+			builder.append("(CONNECT_TIMEOUT=").append(properties.getConnectTimeout()).append(")");
+		}
+		if (properties.getTransportConnectTimeout() != null) {
+			builder.append("(TRANSPORT_CONNECT_TIMEOUT=").append(properties.getTransportConnectTimeout()).append(")");
+		}
+		if (properties.getLoadBalance() != null) {
+			builder.append("(LOAD_BALANCE=").append(properties.getLoadBalance() ? "on" : "off").append(")");
+		}
+		if (properties.getFailover() != null) {
+			builder.append("(FAILOVER=").append(properties.getFailover() ? "on" : "off").append(")");
+		}
+		builder.append("(ADDRESS_LIST=");
+		for (String address : addresses) {
+			String [] parts = address.split(":");
+			builder.append("(ADDRESS=(PROTOCOL=TCP)(HOST=").append(parts[0]).append(")(PORT=").append(parts[1]).append("))");
+		}
+		builder.append(")(CONNECT_DATA=(SID=").append(properties.getSystemIdentifier()).append(")");
+		if (properties.getPooled() != null && properties.getPooled()) {
+			builder.append("(SERVER=POOLED)");
+			if (properties.getConnectionClass() != null) {
+				builder.append("(POOL_CONNECTION_CLASS=").append(properties.getConnectionClass()).append(")");
+			}
+		}
+		builder.append("))");
+		return builder.toString();
+	}
+	
+	private static String buildQuery(OracleThinParameters properties, boolean includeConnectParameters) {
+		Map<String, Object> values = new LinkedHashMap<String, Object>();
+		// the connect parameters are only relevant when they are set explicitly
+		if (includeConnectParameters) {
+			values.put(CONNECT_TIMEOUT, properties.getConnectTimeout());
+			values.put(TRANSPORT_CONNECT_TIMEOUT, properties.getTransportConnectTimeout());
+			values.put(LOAD_BALANCE, properties.getLoadBalance() == null ? null : properties.getLoadBalance() ? "on" : "off");
+			values.put(FAILOVER, properties.getFailover() == null ? null : properties.getFailover() ? "on" : "off");
+			values.put(POOL_CONNECTION_CLASS, properties.getPooled() != null && properties.getPooled() ? properties.getConnectionClass() : null);
+		}
+		OracleTuningProfile profile = properties.getProfile();
+		values.put(ROW_PREFETCH, properties.getRowPrefetch() != null ? properties.getRowPrefetch() : profile == null ? null : profile.getRowPrefetch());
+		values.put(LOB_PREFETCH_SIZE, properties.getLobPrefetchSize() != null ? properties.getLobPrefetchSize() : profile == null ? null : profile.getLobPrefetchSize());
+		values.put(STATEMENT_CACHE_SIZE, properties.getStatementCacheSize() != null ? properties.getStatementCacheSize() : profile == null ? null : profile.getStatementCacheSize());
+		values.put(USE_FETCH_SIZE_WITH_LONG_COLUMN, properties.getUseFetchSizeWithLongColumn() != null ? properties.getUseFetchSizeWithLongColumn() : profile == null ? null : profile.isUseFetchSizeWithLongColumn());
+		values.put(SESSION_DATA_UNIT, properties.getSessionDataUnit() != null ? properties.getSessionDataUnit() : profile == null ? null : profile.getSessionDataUnit());
+		values.put(CLIENT_RESULT_CACHE, properties.getClientResultCache());
+		StringBuilder query = new StringBuilder();
+		for (Map.Entry<String, Object> entry : values.entrySet()) {
+			if (entry.getValue() != null) {
+				query.append(query.length() == 0 ? "?" : "&").append(entry.getKey()).append("=").append(entry.getValue());
+			}
+		}
+		return query.toString();
+	}
+	
+	// returns false if the query contains parameters we do not manage
+	private static boolean loadProperties(OracleThinParameters parameters, String query) {
+		for (String part : query.split("&")) {
+			int index = part.indexOf('=');
+			if (index <= 0) {
+				if (part.trim().isEmpty()) {
+					continue;
+				}
+				return false;
+			}
+			String key = part.substring(0, index);
+			String value = part.substring(index + 1);
+			if (key.equalsIgnoreCase(ROW_PREFETCH)) {
+				parameters.setRowPrefetch(Integer.parseInt(value));
+			}
+			else if (key.equalsIgnoreCase(LOB_PREFETCH_SIZE)) {
+				parameters.setLobPrefetchSize(Integer.parseInt(value));
+			}
+			else if (key.equalsIgnoreCase(STATEMENT_CACHE_SIZE)) {
+				parameters.setStatementCacheSize(Integer.parseInt(value));
+			}
+			else if (key.equalsIgnoreCase(USE_FETCH_SIZE_WITH_LONG_COLUMN)) {
+				parameters.setUseFetchSizeWithLongColumn(Boolean.parseBoolean(value));
+			}
+			else if (key.equalsIgnoreCase(SESSION_DATA_UNIT)) {
+				parameters.setSessionDataUnit(Integer.parseInt(value));
+			}
+			else if (key.equalsIgnoreCase(CLIENT_RESULT_CACHE)) {
+				parameters.setClientResultCache(Boolean.parseBoolean(value));
+			}
+			else if (key.equalsIgnoreCase(CONNECT_TIMEOUT)) {
+				parameters.setConnectTimeout(parseSeconds(value));
+			}
+			else if (key.equalsIgnoreCase(TRANSPORT_CONNECT_TIMEOUT)) {
+				parameters.setTransportConnectTimeout(parseSeconds(value));
+			}
+			else if (key.equalsIgnoreCase(LOAD_BALANCE)) {
+				parameters.setLoadBalance(isOn(value));
+			}
+			else if (key.equalsIgnoreCase(FAILOVER)) {
+				parameters.setFailover(isOn(value));
+			}
+			else if (key.equalsIgnoreCase(POOL_CONNECTION_CLASS)) {
+				parameters.setConnectionClass(value);
+			}
+			else {
+				return false;
+			}
+		}
+		// if the values match a profile exactly, we show the profile instead
+		for (OracleTuningProfile profile : OracleTuningProfile.values()) {
+			if (Integer.valueOf(profile.getRowPrefetch()).equals(parameters.getRowPrefetch())
+					&& Integer.valueOf(profile.getLobPrefetchSize()).equals(parameters.getLobPrefetchSize())
+					&& Integer.valueOf(profile.getStatementCacheSize()).equals(parameters.getStatementCacheSize())
+					&& Boolean.valueOf(profile.isUseFetchSizeWithLongColumn()).equals(parameters.getUseFetchSizeWithLongColumn())
+					&& Integer.valueOf(profile.getSessionDataUnit()).equals(parameters.getSessionDataUnit())) {
+				parameters.setProfile(profile);
+				parameters.setRowPrefetch(null);
+				parameters.setLobPrefetchSize(null);
+				parameters.setStatementCacheSize(null);
+				parameters.setUseFetchSizeWithLongColumn(null);
+				parameters.setSessionDataUnit(null);
+				break;
+			}
+		}
+		return true;
+	}
+
 }
@@ -17,7 +17,6 @@
 
 package be.nabu.eai.module.jdbc.dialects;
 
-import java.sql.SQLException;
 import java.util.Date;
 
 import be.nabu.libs.converter.api.ConverterProvider;
@@ -25,14 +24,13 @@ import oracle.sql.TIMESTAMP;
 
 public class OracleTimestampToDate implements ConverterProvider<TIMESTAMP, Date> {
 
+	private static final String METRIC = OracleMetrics.CONVERTER + ":OracleTimestampToDate";
+
 	@Override
 	public Date convert(TIMESTAMP instance) {
-		try {
-			return instance == null ? null : instance.timestampValue();
-		}
-		catch (SQLException e) {
-			throw new RuntimeException(e);
-		}
+		OracleMetrics.sampleConverter(METRIC);
+		// same semantics as timestampValue(), the timestamp is interpreted in the default time zone
+		return instance == null ? null : new Date(OracleTemporals.toEpochMillis(instance.shareBytes(), OracleTemporals.getDefaultZone()));
 	}
 
 	@Override
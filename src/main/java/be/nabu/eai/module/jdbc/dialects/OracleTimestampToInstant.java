@@ -0,0 +1,45 @@
+/*
+* Copyright (C) 2016 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.eai.module.jdbc.dialects;
+
+import java.time.Instant;
+
+import be.nabu.libs.converter.api.ConverterProvider;
+import oracle.sql.TIMESTAMP;
+
+public class OracleTimestampToInstant implements ConverterProvider<TIMESTAMP, Instant> {
+
+	private static final String METRIC = OracleMetrics.CONVERTER + ":OracleTimestampToInstant";
+
+	@Override
+	public Instant convert(TIMESTAMP instance) {
+		OracleMetrics.sampleConverter(METRIC);
+		return instance == null ? null : OracleTemporals.toInstant(instance.shareBytes(), OracleTemporals.getDefaultZone());
+	}
+
+	@Override
+	public Class<TIMESTAMP> getSourceClass() {
+		return TIMESTAMP.class;
+	}
+
+	@Override
+	public Class<Instant> getTargetClass() {
+		return Instant.class;
+	}
+
+}
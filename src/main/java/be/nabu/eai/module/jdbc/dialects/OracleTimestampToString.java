@@ -22,8 +22,11 @@ import oracle.sql.TIMESTAMP;
 
 public class OracleTimestampToString implements ConverterProvider<TIMESTAMP, String> {
 
+	private static final String METRIC = OracleMetrics.CONVERTER + ":OracleTimestampToString";
+
 	@Override
 	public String convert(TIMESTAMP instance) {
+		OracleMetrics.sampleConverter(METRIC);
 		return instance == null ? null : instance.stringValue();
 	}
 
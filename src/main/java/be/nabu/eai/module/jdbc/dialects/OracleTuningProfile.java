@@ -0,0 +1,58 @@
+/*
+* Copyright (C) 2016 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.eai.module.jdbc.dialects;
+
+/**
+ * Presets for the performance related properties of the thin driver.
+ * Any property that is explicitly set in the wizard overrides the value of the profile.
+ */
+public enum OracleTuningProfile {
+	// short transactions with small result sets
+	OLTP(50, 4000, 50, false, 8192),
+	// large inserts and reads with lobs and long columns
+	BULK(1000, 32768, 20, true, 65535),
+	// large result sets with a wide variety of queries
+	REPORTING(500, 16384, 100, false, 32767);
+	
+	private int rowPrefetch, lobPrefetchSize, statementCacheSize, sessionDataUnit;
+	private boolean useFetchSizeWithLongColumn;
+
+	private OracleTuningProfile(int rowPrefetch, int lobPrefetchSize, int statementCacheSize, boolean useFetchSizeWithLongColumn, int sessionDataUnit) {
+		this.rowPrefetch = rowPrefetch;
+		this.lobPrefetchSize = lobPrefetchSize;
+		this.statementCacheSize = statementCacheSize;
+		this.useFetchSizeWithLongColumn = useFetchSizeWithLongColumn;
+		this.sessionDataUnit = sessionDataUnit;
+	}
+
+	public int getRowPrefetch() {
+		return rowPrefetch;
+	}
+	public int getLobPrefetchSize() {
+		return lobPrefetchSize;
+	}
+	public int getStatementCacheSize() {
+		return statementCacheSize;
+	}
+	public boolean isUseFetchSizeWithLongColumn() {
+		return useFetchSizeWithLongColumn;
+	}
+	public int getSessionDataUnit() {
+		return sessionDataUnit;
+	}
+}
@@ -0,0 +1,41 @@
+/*
+* Copyright (C) 2016 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.eai.module.jdbc.dialects;
+
+import be.nabu.libs.types.properties.SimpleProperty;
+
+/**
+ * The field a table is range partitioned on, combined with the PartitionIntervalProperty this becomes interval partitioning.
+ */
+public class PartitionColumnProperty extends SimpleProperty<String> {
+
+	private static PartitionColumnProperty instance = new PartitionColumnProperty();
+
+	public static PartitionColumnProperty getInstance() {
+		return instance;
+	}
+
+	public PartitionColumnProperty() {
+		super(String.class);
+	}
+
+	@Override
+	public String getName() {
+		return "partitionColumn";
+	}
+}
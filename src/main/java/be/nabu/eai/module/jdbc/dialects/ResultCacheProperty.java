@@ -0,0 +1,41 @@
+/*
+* Copyright (C) 2016 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.eai.module.jdbc.dialects;
+
+import be.nabu.libs.types.properties.SimpleProperty;
+
+/**
+ * Whether the results of selects for this type (or the input or output of a service) can be stored in the server result cache, this is meant for reference data that rarely changes.
+ */
+public class ResultCacheProperty extends SimpleProperty<Boolean> {
+
+	private static ResultCacheProperty instance = new ResultCacheProperty();
+
+	public static ResultCacheProperty getInstance() {
+		return instance;
+	}
+
+	public ResultCacheProperty() {
+		super(Boolean.class);
+	}
+
+	@Override
+	public String getName() {
+		return "resultCache";
+	}
+}
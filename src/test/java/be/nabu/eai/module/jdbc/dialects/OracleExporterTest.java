@@ -0,0 +1,72 @@
+/*
+* Copyright (C) 2016 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.eai.module.jdbc.dialects;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import be.nabu.libs.property.ValueImpl;
+import be.nabu.libs.types.SimpleTypeWrapperFactory;
+import be.nabu.libs.types.api.ComplexContent;
+import be.nabu.libs.types.base.SimpleElementImpl;
+import be.nabu.libs.types.properties.CollectionNameProperty;
+import be.nabu.libs.types.structure.Structure;
+
+public class OracleExporterTest {
+
+	@Test
+	public void testInsertAllColumnLimit() throws IOException {
+		Structure type = new Structure();
+		type.setName("wideRow");
+		type.setProperty(new ValueImpl<String>(CollectionNameProperty.getInstance(), "wide_rows"));
+		for (int i = 0; i < 300; i++) {
+			type.add(new SimpleElementImpl<String>("column" + i, SimpleTypeWrapperFactory.getInstance().getWrapper().wrap(String.class), type));
+		}
+		List<ComplexContent> rows = new ArrayList<ComplexContent>();
+		for (int i = 0; i < 10; i++) {
+			ComplexContent row = type.newInstance();
+			row.set("column0", "row" + i);
+			rows.add(row);
+		}
+		StringWriter writer = new StringWriter();
+		new OracleExporter().export(OracleExporter.Mode.INSERT_ALL, type, rows, writer);
+
+		int blocks = 0, exported = 0;
+		for (String block : writer.toString().split("select 1 from dual;\n")) {
+			int into = 0;
+			for (String line : block.split("\n")) {
+				if (line.startsWith("\tinto ")) {
+					into++;
+				}
+			}
+			// 999 columns at most over all the into clauses, with 300 columns that is 3 rows
+			assertTrue(into * 300 <= 999);
+			blocks++;
+			exported += into;
+		}
+		assertEquals(10, exported);
+		assertEquals(4, blocks);
+	}
+}
@@ -0,0 +1,78 @@
+/*
+* Copyright (C) 2016 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.eai.module.jdbc.dialects;
+
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigDecimal;
+
+import org.junit.Test;
+
+public class OracleNumbersTest {
+
+	// the bytes as shown by dump() in the database
+	private static byte [] bytes(int...values) {
+		byte [] bytes = new byte[values.length];
+		for (int i = 0; i < values.length; i++) {
+			bytes[i] = (byte) values[i];
+		}
+		return bytes;
+	}
+
+	@Test
+	public void testLong() {
+		assertEquals(0, OracleNumbers.toLong(bytes(128)));
+		assertEquals(1, OracleNumbers.toLong(bytes(193, 2)));
+		assertEquals(-1, OracleNumbers.toLong(bytes(62, 100, 102)));
+		assertEquals(100, OracleNumbers.toLong(bytes(194, 2)));
+		assertEquals(123456, OracleNumbers.toLong(bytes(195, 13, 35, 57)));
+		assertEquals(-123456, OracleNumbers.toLong(bytes(60, 89, 67, 45, 102)));
+		// the fraction is truncated
+		assertEquals(12, OracleNumbers.toLong(bytes(193, 13, 51)));
+		assertEquals(0, OracleNumbers.toLong(bytes(192, 51)));
+		assertEquals(Long.MAX_VALUE, OracleNumbers.toLong(bytes(202, 10, 23, 34, 73, 4, 69, 55, 78, 59, 8)));
+		assertEquals(Long.MIN_VALUE, OracleNumbers.toLong(bytes(53, 92, 79, 68, 29, 98, 33, 47, 24, 43, 93, 102)));
+	}
+
+	@Test(expected = ArithmeticException.class)
+	public void testLongOverflow() {
+		// 9223372036854775808
+		OracleNumbers.toLong(bytes(202, 10, 23, 34, 73, 4, 69, 55, 78, 59, 9));
+	}
+
+	@Test(expected = ArithmeticException.class)
+	public void testIntOverflow() {
+		// 2147483648
+		OracleNumbers.toInt(bytes(197, 22, 48, 49, 37, 49));
+	}
+
+	@Test
+	public void testBigDecimal() {
+		assertEquals(BigDecimal.ZERO, OracleNumbers.toBigDecimal(bytes(128)));
+		assertEquals(new BigDecimal("12.5"), OracleNumbers.toBigDecimal(bytes(193, 13, 51)));
+		assertEquals(new BigDecimal("-12.5"), OracleNumbers.toBigDecimal(bytes(62, 89, 51, 102)));
+		assertEquals(new BigDecimal("100"), OracleNumbers.toBigDecimal(bytes(194, 2)));
+		assertEquals(new BigDecimal("0.001"), OracleNumbers.toBigDecimal(bytes(191, 11)));
+		assertEquals(new BigDecimal("1234567890123456789.01"), OracleNumbers.toBigDecimal(bytes(202, 2, 24, 46, 68, 90, 2, 24, 46, 68, 90, 2)));
+	}
+
+	@Test(expected = ArithmeticException.class)
+	public void testInfinity() {
+		OracleNumbers.toBigDecimal(bytes(255, 101));
+	}
+}
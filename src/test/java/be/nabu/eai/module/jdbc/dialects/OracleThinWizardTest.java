@@ -0,0 +1,109 @@
+/*
+* Copyright (C) 2016 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.eai.module.jdbc.dialects;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class OracleThinWizardTest {
+
+	@Test
+	public void testSystemIdentifier() {
+		OracleThinParameters parameters = OracleThinWizard.parse("jdbc:oracle:thin:@prodHost:1521:ORCL");
+		assertEquals("prodHost", parameters.getHost());
+		assertEquals(Integer.valueOf(1521), parameters.getPort());
+		assertEquals("ORCL", parameters.getSystemIdentifier());
+		assertNull(parameters.getDatabase());
+		assertEquals("jdbc:oracle:thin:@prodHost:1521:ORCL", OracleThinWizard.build(parameters));
+	}
+	
+	@Test
+	public void testService() {
+		OracleThinParameters parameters = OracleThinWizard.parse("jdbc:oracle:thin:@//myHost:1522/service_name");
+		assertEquals("myHost", parameters.getHost());
+		assertEquals(Integer.valueOf(1522), parameters.getPort());
+		assertEquals("service_name", parameters.getDatabase());
+		assertEquals("jdbc:oracle:thin:@myHost:1522/service_name", OracleThinWizard.build(parameters));
+	}
+	
+	@Test
+	public void testEasyConnectPlus() {
+		String url = "jdbc:oracle:thin:@host1:1521,host2:1522/service:pooled?connect_timeout=5&load_balance=on&pool_connection_class=app&sdu=65535";
+		OracleThinParameters parameters = OracleThinWizard.parse(url);
+		assertEquals("host1", parameters.getHost());
+		assertEquals(Arrays.asList("host2:1522"), parameters.getHosts());
+		assertEquals("service", parameters.getDatabase());
+		assertTrue(parameters.getPooled());
+		assertEquals(Integer.valueOf(5), parameters.getConnectTimeout());
+		assertTrue(parameters.getLoadBalance());
+		assertEquals("app", parameters.getConnectionClass());
+		assertEquals(Integer.valueOf(65535), parameters.getSessionDataUnit());
+		assertEquals(url, OracleThinWizard.build(parameters));
+		assertRoundTrip(url);
+	}
+	
+	@Test
+	public void testDescriptor() {
+		String url = "jdbc:oracle:thin:@(DESCRIPTION=(CONNECT_TIMEOUT=10)(LOAD_BALANCE=on)(ADDRESS_LIST=(ADDRESS=(PROTOCOL=TCP)(HOST=host1)(PORT=1521))(ADDRESS=(PROTOCOL=TCP)(HOST=host2)(PORT=1521)))(CONNECT_DATA=(SID=ORCL)(SERVER=POOLED)(POOL_CONNECTION_CLASS=app)))";
+		OracleThinParameters parameters = OracleThinWizard.parse(url);
+		assertEquals("host1", parameters.getHost());
+		assertEquals(Arrays.asList("host2:1521"), parameters.getHosts());
+		assertEquals("ORCL", parameters.getSystemIdentifier());
+		assertTrue(parameters.getPooled());
+		assertEquals(Integer.valueOf(10), parameters.getConnectTimeout());
+		assertEquals(url, OracleThinWizard.build(parameters));
+		assertRoundTrip(url);
+		// a service name in a descriptor is written back as easy connect plus
+		assertRoundTrip("jdbc:oracle:thin:@(DESCRIPTION=(ADDRESS=(PROTOCOL=tcp)(HOST=host1)(PORT=1521))(CONNECT_DATA=(SERVICE_NAME=service)))");
+	}
+	
+	@Test
+	public void testDriverPropertiesWithSystemIdentifier() {
+		String url = "jdbc:oracle:thin:@(DESCRIPTION=(ADDRESS_LIST=(ADDRESS=(PROTOCOL=TCP)(HOST=host1)(PORT=1521)))(CONNECT_DATA=(SID=ORCL)))?defaultRowPrefetch=50";
+		OracleThinParameters parameters = OracleThinWizard.parse(url);
+		assertEquals(Integer.valueOf(50), parameters.getRowPrefetch());
+		assertEquals(url, OracleThinWizard.build(parameters));
+	}
+	
+	@Test
+	public void testUnsupported() {
+		// tls
+		assertNull(OracleThinWizard.parse("jdbc:oracle:thin:@(DESCRIPTION=(ADDRESS=(PROTOCOL=TCPS)(HOST=host1)(PORT=2484))(CONNECT_DATA=(SERVICE_NAME=service)))"));
+		assertNull(OracleThinWizard.parse("jdbc:oracle:thin:@tcps://host1:2484/service"));
+		assertNull(OracleThinWizard.parse("jdbc:oracle:thin:@(DESCRIPTION=(ADDRESS=(PROTOCOL=TCP)(HOST=host1)(PORT=1521))(CONNECT_DATA=(SERVICE_NAME=service))(SECURITY=(SSL_SERVER_DN_MATCH=yes)))"));
+		// retries
+		assertNull(OracleThinWizard.parse("jdbc:oracle:thin:@(DESCRIPTION=(RETRY_COUNT=3)(ADDRESS=(PROTOCOL=TCP)(HOST=host1)(PORT=1521))(CONNECT_DATA=(SERVICE_NAME=service)))"));
+		// nested address lists
+		assertNull(OracleThinWizard.parse("jdbc:oracle:thin:@(DESCRIPTION=(ADDRESS_LIST=(ADDRESS_LIST=(ADDRESS=(PROTOCOL=TCP)(HOST=host1)(PORT=1521))))(CONNECT_DATA=(SERVICE_NAME=service)))"));
+		assertNull(OracleThinWizard.parse("jdbc:oracle:thin:@(DESCRIPTION=(ADDRESS_LIST=(ADDRESS=(PROTOCOL=TCP)(HOST=host1)(PORT=1521)))(ADDRESS_LIST=(ADDRESS=(PROTOCOL=TCP)(HOST=host2)(PORT=1521)))(CONNECT_DATA=(SERVICE_NAME=service)))"));
+		// multiple descriptions
+		assertNull(OracleThinWizard.parse("jdbc:oracle:thin:@(DESCRIPTION_LIST=(DESCRIPTION=(ADDRESS=(PROTOCOL=TCP)(HOST=host1)(PORT=1521))(CONNECT_DATA=(SERVICE_NAME=service))))"));
+		// parameters we do not manage
+		assertNull(OracleThinWizard.parse("jdbc:oracle:thin:@host1:1521/service?wallet_location=/wallet"));
+	}
+	
+	private static void assertRoundTrip(String url) {
+		String built = OracleThinWizard.build(OracleThinWizard.parse(url));
+		assertEquals(built, OracleThinWizard.build(OracleThinWizard.parse(built)));
+	}
+}